@@ -3,7 +3,7 @@ package se325.assignment01.concert.webapp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.ConcertDTO;
-import se325.assignment01.concert.common.dto.SeatDTO;
+import se325.assignment01.concert.common.dto.SeatMapDTO;
 import se325.assignment01.concert.webapp.util.AuthUtil;
 
 import javax.servlet.ServletException;
@@ -13,14 +13,13 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.core.GenericType;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class BookingServlet extends HttpServlet {
 
@@ -57,15 +56,17 @@ public class BookingServlet extends HttpServlet {
             }
 
             // Go get the already-booked seats from the web service, so we can mark them as such on the app.
-            List<SeatDTO> bookedSeats = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date) + "?status=Booked")
-                    .request().get(new GenericType<List<SeatDTO>>() {
-                    });
-            LOGGER.info("doGet(): bookedSeats size = " + bookedSeats.size());
-
-//             TEST
-//            bookedSeats = Arrays.asList(new SeatDTO("A1", null), new SeatDTO("G11", null), new SeatDTO("G12", null));
-
-            List<String> bookedSeatLabels = bookedSeats.stream().map(seat -> "\"" + seat.getLabel() + "\"").collect(Collectors.toList());
+            // They come as a seat map, which is a fraction of the size of a list of the booked seats.
+            SeatMapDTO seatMap = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date))
+                    .request(SeatMapDTO.MEDIA_TYPE).get(SeatMapDTO.class);
+            BitSet booked = BitSet.valueOf(Base64.getDecoder().decode(seatMap.getBooked()));
+            LOGGER.info("doGet(): bookedSeats size = " + booked.cardinality());
+
+            List<String> bookedSeatLabels = new ArrayList<>();
+            for (int i = booked.nextSetBit(0); i >= 0; i = booked.nextSetBit(i + 1)) {
+                char row = (char) ('A' + i / seatMap.getSeatsPerRow());
+                bookedSeatLabels.add("\"" + row + (i % seatMap.getSeatsPerRow() + 1) + "\"");
+            }
             String seatLabelString = String.join(", ", bookedSeatLabels);
             LOGGER.info("doGet(): seatLabelString = " + seatLabelString);
 
@@ -18,6 +18,22 @@ export const FetchAPI = {
         return this.post(`${WEB_URI}/bookings`, bookingRequest);
     },
 
+    holdSeats(date, seatLabels) {
+        return this.post(`${WEB_URI}/seats/${date}/holds`, seatLabels);
+    },
+
+    openSeatStream(date) {
+        return new EventSource(`${WEB_URI}/seats/${date}/stream`);
+    },
+
+    releaseSeatHold(date, holdId) {
+        return fetch(`${WEB_URI}/seats/${date}/holds/${holdId}`, {
+            method: "DELETE",
+            cache: "no-cache",
+            credentials: "same-origin"
+        });
+    },
+
     post(url, body) {
         return fetch(url, {
             method: "POST",
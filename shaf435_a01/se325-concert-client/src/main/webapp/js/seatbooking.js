@@ -17,8 +17,18 @@ export function initSeatBookingPage(concertId, concertDate) {
     // Setup "buy" button
     document.querySelector("#button-book").addEventListener("click", handleBookButtonClicked);
 
+    // Keep the seats up to date as other users book and release them
+    const seatStream = FetchAPI.openSeatStream(concertDate);
+    seatStream.addEventListener("seats", event => handleSeatsChanged(JSON.parse(event.data)));
+
+    // The server-side hold on the currently held seats, if any. Hold updates are chained so they reach the
+    // server in the order the seats were clicked.
+    let currentHold = null;
+    let holdUpdate = Promise.resolve();
+
     /**
-     * Whenever a seat is clicked, if that seat isn't already booked, toggle its "held" status.
+     * Whenever a seat is clicked, if that seat isn't already booked, toggle its "held" status and update the hold
+     * on the server to match.
      */
     function handleSeatClicked() {
         const seatDiv = this;
@@ -28,6 +38,55 @@ export function initSeatBookingPage(concertId, concertDate) {
             SeatUI.toggleHeld(seat);
 
             displayTotals();
+
+            holdUpdate = holdUpdate.then(() => updateHold(seat));
+        }
+    }
+
+    /**
+     * Holds all seats the user has selected on the server, or releases the hold if none are selected. If the
+     * clicked seat has been taken by someone else in the meantime, it's shown as booked instead.
+     */
+    async function updateHold(clickedSeat) {
+        const heldSeatLabels = SeatData.getHeldSeats(seats).map(seat => seat.label);
+        try {
+            if (heldSeatLabels.length === 0) {
+                if (currentHold) {
+                    await FetchAPI.releaseSeatHold(concertDate, currentHold.id);
+                    currentHold = null;
+                }
+                return;
+            }
+
+            const response = await FetchAPI.holdSeats(concertDate, heldSeatLabels);
+            if (response.status === 201) {
+                currentHold = await response.json();
+            }
+            else if (clickedSeat.isHeld) {
+                SeatUI.toggleHeld(clickedSeat);
+                if (response.status === 403) {
+                    SeatUI.toggleBooked(clickedSeat);
+                }
+                displayTotals();
+            }
+        } catch (err) {
+            console.log(err);
+        }
+    }
+
+    /**
+     * Shows seats that have been booked or released since the page was loaded. Any seat the user has selected that
+     * someone else books is deselected.
+     */
+    function handleSeatsChanged(update) {
+        const booked = SeatData.getSeatsByLabel(seats, ...update.booked).filter(seat => !seat.isBooked);
+        const released = SeatData.getSeatsByLabel(seats, ...update.released).filter(seat => seat.isBooked);
+        const lost = booked.filter(seat => seat.isHeld);
+
+        SeatUI.toggleHeld(...lost);
+        SeatUI.toggleBooked(...booked, ...released);
+        if (lost.length > 0) {
+            displayTotals();
         }
     }
 
@@ -46,7 +105,10 @@ export function initSeatBookingPage(concertId, concertDate) {
     }
 
     // When the "book" button is clicked, send a booking request.
-    function handleBookButtonClicked() {
+    async function handleBookButtonClicked() {
+
+        // Wait for any outstanding hold update, so the booking confirms the latest hold
+        await holdUpdate;
 
         const heldSeats = SeatData.getHeldSeats(seats);
 
@@ -54,7 +116,8 @@ export function initSeatBookingPage(concertId, concertDate) {
         const bookingRequest = {
             concertId: concertId,
             date: concertDate,
-            seatLabels: heldSeats.map(seat => seat.label)
+            seatLabels: heldSeats.map(seat => seat.label),
+            holdId: currentHold ? currentHold.id : null
         };
 
         makeBookingRequest(bookingRequest);
@@ -0,0 +1,68 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a request to book the best available adjacent seats, chosen by the web service.
+ * concertId   the id of the concert to be booked
+ * date        the date on which that concert is to be booked
+ * numSeats    how many adjacent seats, in the same row, are wanted
+ * priceBand   optionally, the name of the price band the seats must be in, e.g. "Gold Seating". If not given, the
+ *             seats closest to the stage are chosen.
+ */
+public class BestAvailableRequestDTO {
+
+    private long concertId;
+    private LocalDateTime date;
+    private int numSeats;
+    private String priceBand;
+
+    public BestAvailableRequestDTO() {
+    }
+
+    public BestAvailableRequestDTO(long concertId, LocalDateTime date, int numSeats, String priceBand) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numSeats = numSeats;
+        this.priceBand = priceBand;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public String getPriceBand() {
+        return priceBand;
+    }
+
+    public void setPriceBand(String priceBand) {
+        this.priceBand = priceBand;
+    }
+}
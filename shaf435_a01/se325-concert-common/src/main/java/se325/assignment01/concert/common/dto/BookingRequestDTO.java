@@ -15,12 +15,15 @@ import java.util.List;
  * concertId   the id of the concert to be booked
  * date        the date on which that concert is to be booked
  * seats       the seats which are requested for that concert on that date
+ * holdId      optionally, the id of a seat hold to confirm. When given, the held seats are booked; if the hold has
+ *             expired, the requested seats are booked instead.
  */
 public class BookingRequestDTO {
 
     private long concertId;
     private LocalDateTime date;
     private List<String> seatLabels = new ArrayList<>();
+    private String holdId;
 
     public BookingRequestDTO(){}
 
@@ -60,4 +63,12 @@ public class BookingRequestDTO {
     public void setSeatLabels(List<String> seatLabels) {
         this.seatLabels = seatLabels;
     }
+
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(String holdId) {
+        this.holdId = holdId;
+    }
 }
@@ -0,0 +1,50 @@
+package se325.assignment01.concert.common.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Represents a band of rows at the concert venue whose seats all cost the same. Bands are listed from the front row.
+ *
+ * name     the band's name, e.g. "Gold Seating"
+ * price    the price of each seat in the band
+ * numRows  how many rows the band covers
+ */
+public class PriceBandDTO {
+
+    private String name;
+    private BigDecimal price;
+    private int numRows;
+
+    public PriceBandDTO() {
+    }
+
+    public PriceBandDTO(String name, BigDecimal price, int numRows) {
+        this.name = name;
+        this.price = price;
+        this.numRows = numRows;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public void setNumRows(int numRows) {
+        this.numRows = numRows;
+    }
+}
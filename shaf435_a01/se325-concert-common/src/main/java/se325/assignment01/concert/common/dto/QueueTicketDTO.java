@@ -0,0 +1,70 @@
+package se325.assignment01.concert.common.dto;
+
+/**
+ * Represents a client's place in the waiting room for a concert.
+ *
+ * id                       the ticket's id, to be sent in the "admission" cookie when booking
+ * concertId                the concert whose waiting room the ticket is for
+ * admitted                 whether the client may book now
+ * position                 the number of clients ahead in the queue, including this one; 0 once admitted
+ * estimatedWaitSeconds     roughly how long until the client is admitted
+ */
+public class QueueTicketDTO {
+
+    private String id;
+    private long concertId;
+    private boolean admitted;
+    private long position;
+    private long estimatedWaitSeconds;
+
+    public QueueTicketDTO() {
+    }
+
+    public QueueTicketDTO(String id, long concertId, boolean admitted, long position, long estimatedWaitSeconds) {
+        this.id = id;
+        this.concertId = concertId;
+        this.admitted = admitted;
+        this.position = position;
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    public boolean isAdmitted() {
+        return admitted;
+    }
+
+    public void setAdmitted(boolean admitted) {
+        this.admitted = admitted;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public long getEstimatedWaitSeconds() {
+        return estimatedWaitSeconds;
+    }
+
+    public void setEstimatedWaitSeconds(long estimatedWaitSeconds) {
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+    }
+}
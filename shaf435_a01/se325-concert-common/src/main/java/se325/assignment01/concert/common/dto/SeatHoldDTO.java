@@ -0,0 +1,72 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents seats temporarily held for a user while they complete a booking.
+ *
+ * id           the hold's id, to be passed in the BookingRequestDTO that confirms the hold
+ * date         the date of the concert for which the seats are held
+ * seatLabels   the held seats
+ * expiry       the time at which the hold lapses and the seats are released
+ */
+public class SeatHoldDTO {
+
+    private String id;
+    private LocalDateTime date;
+    private List<String> seatLabels = new ArrayList<>();
+    private LocalDateTime expiry;
+
+    public SeatHoldDTO() {
+    }
+
+    public SeatHoldDTO(String id, LocalDateTime date, List<String> seatLabels, LocalDateTime expiry) {
+        this.id = id;
+        this.date = date;
+        this.seatLabels = seatLabels;
+        this.expiry = expiry;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public List<String> getSeatLabels() {
+        return seatLabels;
+    }
+
+    public void setSeatLabels(List<String> seatLabels) {
+        this.seatLabels = seatLabels;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(LocalDateTime expiry) {
+        this.expiry = expiry;
+    }
+}
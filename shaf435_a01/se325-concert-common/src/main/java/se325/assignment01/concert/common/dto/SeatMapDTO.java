@@ -0,0 +1,81 @@
+package se325.assignment01.concert.common.dto;
+
+import java.util.List;
+
+/**
+ * A compact representation of which seats are booked on a concert date, as an alternative to a list of
+ * {@link SeatDTO}s. Seats are identified by their position in the venue's layout: counting row by row from the front,
+ * starting at 0 for seat A1, so that the seat at position p is in row p / seatsPerRow and has number
+ * p % seatsPerRow + 1.
+ *
+ * layoutVersion    the version of the venue's layout; positions only identify the same seats within a version
+ * numRows          the number of rows, named from A
+ * seatsPerRow      the number of seats in each row
+ * priceBands       the price bands, from the front row
+ * booked           the base64-encoded bitset of booked positions: bit p % 8 of byte p / 8 is set when the seat at
+ *                  position p is booked
+ */
+public class SeatMapDTO {
+
+    /**
+     * The media type to ask for seats as a seat map rather than a list of seats.
+     */
+    public static final String MEDIA_TYPE = "application/vnd.se325.seat-map+json";
+
+    private int layoutVersion;
+    private int numRows;
+    private int seatsPerRow;
+    private List<PriceBandDTO> priceBands;
+    private String booked;
+
+    public SeatMapDTO() {
+    }
+
+    public SeatMapDTO(int layoutVersion, int numRows, int seatsPerRow, List<PriceBandDTO> priceBands, String booked) {
+        this.layoutVersion = layoutVersion;
+        this.numRows = numRows;
+        this.seatsPerRow = seatsPerRow;
+        this.priceBands = priceBands;
+        this.booked = booked;
+    }
+
+    public int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    public void setLayoutVersion(int layoutVersion) {
+        this.layoutVersion = layoutVersion;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public void setNumRows(int numRows) {
+        this.numRows = numRows;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    public void setSeatsPerRow(int seatsPerRow) {
+        this.seatsPerRow = seatsPerRow;
+    }
+
+    public List<PriceBandDTO> getPriceBands() {
+        return priceBands;
+    }
+
+    public void setPriceBands(List<PriceBandDTO> priceBands) {
+        this.priceBands = priceBands;
+    }
+
+    public String getBooked() {
+        return booked;
+    }
+
+    public void setBooked(String booked) {
+        this.booked = booked;
+    }
+}
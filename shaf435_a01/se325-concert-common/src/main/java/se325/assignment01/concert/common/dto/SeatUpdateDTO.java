@@ -0,0 +1,41 @@
+package se325.assignment01.concert.common.dto;
+
+import java.util.List;
+
+/**
+ * Represents a change to which seats are booked on a concert date, as sent to clients streaming seat updates.
+ * Changes that happen while a client is still receiving an earlier update are combined into one, so a seat appears
+ * in at most one of the lists, with its latest state.
+ *
+ * booked   the labels of seats that have been booked
+ * released the labels of seats that have been released, and are free again
+ */
+public class SeatUpdateDTO {
+
+    private List<String> booked;
+    private List<String> released;
+
+    public SeatUpdateDTO() {
+    }
+
+    public SeatUpdateDTO(List<String> booked, List<String> released) {
+        this.booked = booked;
+        this.released = released;
+    }
+
+    public List<String> getBooked() {
+        return booked;
+    }
+
+    public void setBooked(List<String> booked) {
+        this.booked = booked;
+    }
+
+    public List<String> getReleased() {
+        return released;
+    }
+
+    public void setReleased(List<String> released) {
+        this.released = released;
+    }
+}
@@ -0,0 +1,124 @@
+package se325.assignment01.concert.service.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.Config;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.SeatAvailability;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a batch of {@link BookingCommand}s in a single transaction. Commands are first checked in order against the
+ * seat availability index and against each other, so that a command asking for seats already taken by an earlier
+ * command in the batch is rejected up front rather than failing the whole transaction. If the transaction fails
+ * anyway, e.g. because the database disagrees with the index, each command is retried in a transaction of its own.
+ */
+public class BookingBatchWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingBatchWriter.class);
+
+    public void write(List<BookingCommand> commands) {
+        List<BookingCommand> accepted = rejectUnavailable(commands);
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<Long> bookingIds;
+        try {
+            bookingIds = writeTogether(accepted);
+        } catch (RuntimeException e) {
+            if (accepted.size() == 1) {
+                accepted.get(0).getResult().completeExceptionally(toWebApplicationException(e));
+            } else {
+                LOGGER.info("write(): Batch of " + accepted.size() + " bookings failed; writing individually");
+                accepted.forEach(command -> write(List.of(command)));
+            }
+            return;
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            BookingCommand command = accepted.get(i);
+            SeatAvailability.instance().markBooked(command.getDate(), command.getSeatLabels());
+            command.getResult().complete(bookingIds.get(i));
+        }
+    }
+
+    // Reject commands for seats that are booked, or claimed by an earlier command in the same batch, with 403
+    private List<BookingCommand> rejectUnavailable(List<BookingCommand> commands) {
+        List<BookingCommand> accepted = new ArrayList<>();
+        Map<LocalDateTime, BitSet> claimed = new HashMap<>();
+        for (BookingCommand command : commands) {
+            BitSet claimedOnDate = claimed.computeIfAbsent(command.getDate(), date -> new BitSet());
+            BitSet requested = new BitSet();
+            boolean available = !SeatAvailability.instance().anyUnavailable(command.getDate(), command.getSeatLabels());
+            for (String label : command.getSeatLabels()) {
+                int index = TheatreLayout.indexOf(label);
+                if (!available || claimedOnDate.get(index) || requested.get(index)) {
+                    available = false;
+                    break;
+                }
+                requested.set(index);
+            }
+
+            if (available) {
+                claimedOnDate.or(requested);
+                accepted.add(command);
+            } else {
+                command.getResult().completeExceptionally(new WebApplicationException(Response.Status.FORBIDDEN));
+            }
+        }
+        return accepted;
+    }
+
+    private List<Long> writeTogether(List<BookingCommand> commands) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            List<Long> bookingIds = new ArrayList<>();
+            for (BookingCommand command : commands) {
+                Booking booking = Config.SEAT_CLAIM_STRATEGY.claim(em,
+                        em.getReference(Concert.class, command.getConcertId()),
+                        em.getReference(User.class, command.getUserId()),
+                        command.getDate(),
+                        command.getSeatLabels());
+                if (booking == null) {
+                    throw new WebApplicationException(Response.Status.FORBIDDEN);
+                }
+                bookingIds.add(booking.getId());
+            }
+            em.getTransaction().commit();
+            return bookingIds;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static WebApplicationException toWebApplicationException(RuntimeException e) {
+        if (e instanceof WebApplicationException) {
+            return (WebApplicationException) e;
+        }
+        if (e instanceof OptimisticLockException || e.getCause() instanceof OptimisticLockException) {
+            // Another booking claimed the seats first
+            return new WebApplicationException(Response.Status.CONFLICT);
+        }
+        LOGGER.error("write(): Failed to write booking", e);
+        return new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
+    }
+}
@@ -0,0 +1,46 @@
+package se325.assignment01.concert.service.booking;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A request to book seats that has already been authenticated and validated against the concert, waiting to be
+ * written by a {@link BookingEngine}. The result completes with the new booking's id, or exceptionally with a
+ * WebApplicationException carrying the response status.
+ */
+public class BookingCommand {
+
+    private final long userId;
+    private final long concertId;
+    private final LocalDateTime date;
+    private final List<String> seatLabels;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    public BookingCommand(long userId, long concertId, LocalDateTime date, List<String> seatLabels) {
+        this.userId = userId;
+        this.concertId = concertId;
+        this.date = date;
+        this.seatLabels = seatLabels;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public List<String> getSeatLabels() {
+        return seatLabels;
+    }
+
+    public CompletableFuture<Long> getResult() {
+        return result;
+    }
+}
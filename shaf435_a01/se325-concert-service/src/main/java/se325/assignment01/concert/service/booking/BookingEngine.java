@@ -0,0 +1,51 @@
+package se325.assignment01.concert.service.booking;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Writes bookings on behalf of the booking resource, instead of each request claiming its seats in its own
+ * transaction.
+ */
+public interface BookingEngine {
+
+    /**
+     * Queues the given command for writing. The command's result completes once it has been written or rejected.
+     */
+    void submit(BookingCommand command);
+
+    /**
+     * Submits the given command and waits for it to be written.
+     *
+     * @return the id of the new booking
+     * @throws WebApplicationException if the booking was rejected
+     */
+    default long book(BookingCommand command) {
+        submit(command);
+        try {
+            return command.getResult().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WebApplicationException) {
+                throw (WebApplicationException) e.getCause();
+            }
+            throw new WebApplicationException(e.getCause(), Response.Status.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Returns the engine with the given name, or null for "direct", meaning that each request writes its own booking.
+     */
+    static BookingEngine forName(String name) {
+        switch (name) {
+            case "direct":
+                return null;
+            case "sequenced":
+                return new SequencedBookingEngine();
+            case "group-commit":
+                return new GroupCommitBookingEngine();
+            default:
+                throw new IllegalArgumentException("Unknown booking engine: " + name);
+        }
+    }
+}
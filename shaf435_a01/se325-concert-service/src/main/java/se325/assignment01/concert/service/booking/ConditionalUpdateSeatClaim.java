@@ -0,0 +1,46 @@
+package se325.assignment01.concert.service.booking;
+
+import org.hibernate.query.NativeQuery;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Claims all requested seats with a single conditional bulk UPDATE, without loading any Seat entities. The update
+ * only touches seats that are still unbooked, so if it affects fewer rows than were requested another booking got
+ * there first and the caller rolls back.
+ * <p>
+ * The seat versions are still incremented so that this strategy can run alongside {@link OptimisticSeatClaim}.
+ */
+public class ConditionalUpdateSeatClaim implements SeatClaimStrategy {
+
+    @Override
+    public Booking claim(EntityManager em, Concert concert, User user, LocalDateTime date, List<String> seatLabels) {
+        int claimed = em.createQuery("update Seat s set s.isBooked = true, s.version = s.version + 1 where s.date = :date AND s.label IN :labels AND s.isBooked = false")
+                .setParameter("date", date)
+                .setParameter("labels", seatLabels)
+                .executeUpdate();
+        if (claimed != seatLabels.size()) {
+            return null;
+        }
+
+        // The seats are not in the persistence context, so link them to the booking directly in the join table
+        Booking booking = new Booking(concert, user, date, new HashSet<>());
+        em.persist(booking);
+        em.flush();
+        // Naming the table written keeps Hibernate from evicting everything from the second-level cache
+        em.createNativeQuery("insert into BOOKING_SEATS (BOOKING_ID, SEAT_ID) select :bookingId, ID from SEAT where DATE = :date AND LABEL IN (:labels)")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("BOOKING_SEATS")
+                .setParameter("bookingId", booking.getId())
+                .setParameter("date", date)
+                .setParameter("labels", seatLabels)
+                .executeUpdate();
+        return booking;
+    }
+}
@@ -0,0 +1,63 @@
+package se325.assignment01.concert.service.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.services.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the bookings that arrive within a short window, or until a batch is full, and writes them together in one
+ * transaction on a single committer thread. Each caller is still answered individually once the batch commits.
+ * This trades a few milliseconds of latency for far fewer commits when many bookings arrive at once.
+ */
+public class GroupCommitBookingEngine implements BookingEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitBookingEngine.class);
+
+    private final BlockingQueue<BookingCommand> pending = new LinkedBlockingQueue<>();
+    private final BookingBatchWriter writer = new BookingBatchWriter();
+
+    public GroupCommitBookingEngine() {
+        Thread committer = new Thread(this::run, "booking-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public void submit(BookingCommand command) {
+        pending.add(command);
+    }
+
+    private void run() {
+        while (true) {
+            List<BookingCommand> batch = new ArrayList<>();
+            try {
+                // The window opens when the first booking of a batch arrives
+                batch.add(pending.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.BOOKING_GROUP_COMMIT_MILLIS);
+                while (batch.size() < Config.BOOKING_BATCH_SIZE) {
+                    BookingCommand command = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (command == null) {
+                        break;
+                    }
+                    batch.add(command);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                writer.write(batch);
+            } catch (RuntimeException e) {
+                LOGGER.error("run(): Failed to write batch of " + batch.size() + " bookings", e);
+                batch.forEach(command -> command.getResult().completeExceptionally(e));
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package se325.assignment01.concert.service.booking;
+
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Loads the requested seats, marks them as booked in memory and relies on {@link Seat}'s version column to detect
+ * a concurrent booking of the same seats. A lost race surfaces as an OptimisticLockException on commit.
+ */
+public class OptimisticSeatClaim implements SeatClaimStrategy {
+
+    @Override
+    public Booking claim(EntityManager em, Concert concert, User user, LocalDateTime date, List<String> seatLabels) {
+        // Retrieve all Seat objects wanting to be booked that are currently unbooked
+        List<Seat> requestedSeats = em.createQuery("select s from Seat s where s.date = :date AND s.label IN :labels AND s.isBooked = false", Seat.class)
+                .setParameter("date", date)
+                .setParameter("labels", seatLabels)
+                .setLockMode(LockModeType.OPTIMISTIC)
+                .getResultList();
+
+        // Check if any requested seats are already booked
+        if (requestedSeats.size() != seatLabels.size()) {
+            return null;
+        }
+
+        // Mark seats as booked and create Booking for user
+        requestedSeats.forEach(seat -> seat.setBooked(true));
+        Booking booking = new Booking(concert, user, date, new HashSet<>(requestedSeats));
+        em.persist(booking);
+        return booking;
+    }
+}
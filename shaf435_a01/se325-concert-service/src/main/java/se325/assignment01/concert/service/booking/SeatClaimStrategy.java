@@ -0,0 +1,38 @@
+package se325.assignment01.concert.service.booking;
+
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A way of claiming seats for a booking. Implementations mark the requested seats as booked and persist the
+ * {@link Booking} within the caller's transaction; the caller is responsible for committing or rolling back.
+ */
+public interface SeatClaimStrategy {
+
+    /**
+     * Claims the given seats and persists a Booking for them using the EntityManager's active transaction.
+     *
+     * @return the persisted Booking, or null if any of the requested seats is already booked or does not exist. In
+     * that case the caller must roll back the transaction.
+     */
+    Booking claim(EntityManager em, Concert concert, User user, LocalDateTime date, List<String> seatLabels);
+
+    /**
+     * Returns the strategy with the given name, either "optimistic" or "conditional-update".
+     */
+    static SeatClaimStrategy forName(String name) {
+        switch (name) {
+            case "optimistic":
+                return new OptimisticSeatClaim();
+            case "conditional-update":
+                return new ConditionalUpdateSeatClaim();
+            default:
+                throw new IllegalArgumentException("Unknown seat claim strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package se325.assignment01.concert.service.booking;
+
+import se325.assignment01.concert.service.services.Config;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Routes each booking to a queue for its concert date, and has a single writer at a time drain each queue in order,
+ * writing whatever has queued up as one batch. Bookings for the same date therefore queue behind each other instead
+ * of racing for the same seats and failing optimistic lock checks, while bookings for different dates are written in
+ * parallel on a pool with one thread per core.
+ */
+public class SequencedBookingEngine implements BookingEngine {
+
+    private final Map<LocalDateTime, DateQueue> queues = new ConcurrentHashMap<>();
+    private final BookingBatchWriter writer = new BookingBatchWriter();
+    private final ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "booking-sequencer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void submit(BookingCommand command) {
+        DateQueue queue = queues.computeIfAbsent(command.getDate(), date -> new DateQueue());
+        queue.commands.add(command);
+        if (queue.draining.compareAndSet(false, true)) {
+            workers.execute(() -> drain(queue));
+        }
+    }
+
+    // Writes one batch from the queue. The queue is handed back to the pool rather than drained in a loop, so that a
+    // busy date can't starve the others of workers.
+    private void drain(DateQueue queue) {
+        List<BookingCommand> batch = new ArrayList<>();
+        BookingCommand command;
+        while (batch.size() < Config.BOOKING_BATCH_SIZE && (command = queue.commands.poll()) != null) {
+            batch.add(command);
+        }
+
+        try {
+            writer.write(batch);
+        } catch (RuntimeException e) {
+            batch.forEach(c -> c.getResult().completeExceptionally(e));
+        }
+
+        if (!queue.commands.isEmpty()) {
+            workers.execute(() -> drain(queue));
+            return;
+        }
+        queue.draining.set(false);
+        // A command may have been queued after the last poll but before the flag was cleared
+        if (!queue.commands.isEmpty() && queue.draining.compareAndSet(false, true)) {
+            workers.execute(() -> drain(queue));
+        }
+    }
+
+    private static class DateQueue {
+        private final Queue<BookingCommand> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+    }
+}
@@ -8,10 +8,15 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "BOOKING")
+// Bookings are listed per user, in id order
+@Table(name = "BOOKING", indexes = {
+        @Index(name = "IDX_BOOKING_USER", columnList = "USER_ID, ID")
+})
 public class Booking {
+    // Sequence-generated so that inserts of many bookings in one transaction can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOKING_SEQ")
+    @SequenceGenerator(name = "BOOKING_SEQ", sequenceName = "BOOKING_SEQ", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -23,6 +28,9 @@ public class Booking {
     private User user;
 
     @OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
+    @JoinTable(name = "BOOKING_SEATS",
+            joinColumns = @JoinColumn(name = "BOOKING_ID"),
+            inverseJoinColumns = @JoinColumn(name = "SEAT_ID"))
     @Fetch(FetchMode.SUBSELECT)
     private Set<Seat> seats;
 
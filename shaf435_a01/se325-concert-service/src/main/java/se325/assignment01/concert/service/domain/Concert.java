@@ -9,13 +9,26 @@ import javax.persistence.*;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import se325.assignment01.concert.common.types.Genre;
 
 @Entity
 @Table(name = "CONCERTS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(name = Concert.FULL, attributeNodes = {
+        @NamedAttributeNode("dates"),
+        @NamedAttributeNode("performers")
+})
 public class Concert {
+    /**
+     * Entity graph that loads a concert together with its dates and performers, in the same query.
+     */
+    public static final String FULL = "Concert.full";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "ID")
@@ -34,6 +47,7 @@ public class Concert {
     @CollectionTable(name = "CONCERT_DATES", joinColumns = @JoinColumn(name = "CONCERT_ID"))
     @Column(name="DATE")
     @Fetch(FetchMode.SUBSELECT)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<LocalDateTime> dates;
 
     @ManyToMany(fetch = FetchType.LAZY)
@@ -41,6 +55,7 @@ public class Concert {
             joinColumns = @JoinColumn(name = "CONCERT_ID"),
             inverseJoinColumns = @JoinColumn(name = "PERFORMER_ID"))
     @Fetch(FetchMode.SUBSELECT)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @Column(name = "PERFORMERS")
     private Set<Performer> performers;
 
@@ -1,11 +1,15 @@
 package se325.assignment01.concert.service.domain;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import se325.assignment01.concert.common.types.Genre;
 
 import javax.persistence.*;
 
 @Entity
 @Table(name = "PERFORMERS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Performer {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
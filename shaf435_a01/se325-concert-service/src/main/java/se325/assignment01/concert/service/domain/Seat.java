@@ -7,7 +7,11 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "SEAT")
+// Seats are looked up by date, by date and label when booking, and by date and booking status
+@Table(name = "SEAT", indexes = {
+		@Index(name = "IDX_SEAT_DATE_LABEL", columnList = "DATE, LABEL", unique = true),
+		@Index(name = "IDX_SEAT_DATE_BOOKED", columnList = "DATE, IS_BOOKED")
+})
 public class Seat {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
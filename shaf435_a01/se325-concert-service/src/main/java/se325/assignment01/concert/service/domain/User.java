@@ -3,7 +3,11 @@ package se325.assignment01.concert.service.domain;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "USERS")
+// Users are looked up by auth token on authenticated requests, and by username on login
+@Table(name = "USERS", indexes = {
+        @Index(name = "IDX_USERS_AUTH_TOKEN", columnList = "AUTH_TOKEN"),
+        @Index(name = "IDX_USERS_USERNAME", columnList = "USERNAME")
+})
 public class User {
     @Id
     @GeneratedValue
@@ -0,0 +1,79 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import se325.assignment01.concert.service.util.JsonBody;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.util.function.Supplier;
+
+/**
+ * Builds responses for GET requests that honour <code>If-None-Match</code>, for resources whose state is identified by
+ * a version number that changes whenever the resource does.
+ */
+public class ConditionalResponses {
+
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("no-cache");
+
+    private ConditionalResponses() {}
+
+    /**
+     * Starts a response that is 304 Not Modified if the request's <code>If-None-Match</code> matches the given
+     * version, and otherwise 200 OK with the entity. The entity is only built when it is sent, and the version must be
+     * read before it is built, so that the version sent is never newer than the entity.
+     * <p>
+     * Either way the response carries the version as a strong ETag, and asks clients to revalidate before reusing it.
+     */
+    public static Response.ResponseBuilder ok(Request request, String version, Supplier<?> entity) {
+        EntityTag etag = new EntityTag(version);
+        Response.ResponseBuilder rb = request.evaluatePreconditions(etag);
+        if (rb == null) {
+            rb = Response.ok(entity.get());
+        }
+        return rb.tag(etag).cacheControl(REVALIDATE);
+    }
+
+    /**
+     * As {@link #ok(Request, String, Supplier)}, for a body that is already serialised. The body is sent
+     * gzip-compressed to clients that accept it. As the compressed and uncompressed bodies are different
+     * representations, they are given different ETags.
+     */
+    public static Response.ResponseBuilder ok(Request request, HttpHeaders headers, String version, JsonBody body) {
+        boolean gzip = acceptsGzip(headers);
+        EntityTag etag = new EntityTag(gzip ? version + "-gzip" : version);
+        Response.ResponseBuilder rb = request.evaluatePreconditions(etag);
+        if (rb == null) {
+            rb = Response.ok(gzip ? body.getGzip() : body.getJson(), MediaType.APPLICATION_JSON_TYPE);
+            if (gzip) {
+                rb.encoding("gzip");
+            }
+        }
+        return rb.tag(etag).cacheControl(REVALIDATE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    /**
+     * Returns true if the request's <code>Accept-Encoding</code> lists gzip, other than with a quality of 0.
+     */
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        String acceptEncoding = headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
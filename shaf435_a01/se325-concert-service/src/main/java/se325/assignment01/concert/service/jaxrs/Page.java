@@ -0,0 +1,70 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import se325.assignment01.concert.service.services.Config;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of a list ordered by id. Pages are asked for with the <code>after</code> and <code>limit</code> query
+ * parameters: a page holds the first <code>limit</code> items with an id greater than <code>after</code>, and when
+ * there are more items the response links to the next page with a <code>Link</code> header with rel="next".
+ * <p>
+ * As pages start from an id rather than an offset, each page is as quick to fetch as the first, however far into the
+ * list it is, and items added or removed while a client pages through the list don't shift the pages.
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final Link next;
+
+    private Page(List<T> items, Link next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    /**
+     * Checks the page size asked for, and returns how many items to fetch for the page: one more than the page size,
+     * so that whether there is a next page can be told from the items fetched. If no page size was asked for, the page
+     * holds every item.
+     */
+    public static int fetchSize(Integer limit) {
+        if (limit == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (limit < 1 || limit > Config.MAX_PAGE_SIZE) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return limit + 1;
+    }
+
+    /**
+     * Makes a page from items fetched in id order, up to {@link #fetchSize(Integer)} of them.
+     */
+    public static <T> Page<T> of(List<T> fetched, Integer limit, ToLongFunction<T> id, UriInfo uriInfo) {
+        if (limit == null || fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        long lastId = id.applyAsLong(items.get(limit - 1));
+        Link next = Link.fromUriBuilder(uriInfo.getRequestUriBuilder().replaceQueryParam("after", lastId))
+                .rel("next")
+                .build();
+        return new Page<>(items, next);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Adds the link to the next page, if there is one, to the given response.
+     */
+    public Response.ResponseBuilder addLinks(Response.ResponseBuilder rb) {
+        return next == null ? rb : rb.links(next);
+    }
+}
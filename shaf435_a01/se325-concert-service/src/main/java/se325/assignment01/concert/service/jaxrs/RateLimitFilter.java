@@ -0,0 +1,56 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.services.Config;
+import se325.assignment01.concert.service.util.RateLimiter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests to {@link RateLimited} resource methods with 429 when their client is making them too fast, before
+ * the resource method - and so the database - is reached. Requests are limited both per auth token and per client
+ * address, so that a client can't get round the limit by logging in again, nor by spreading its requests over many
+ * accounts. Either limit can be turned off by setting its rate to 0.
+ */
+@Provider
+@RateLimited
+public class RateLimitFilter implements ContainerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final RateLimiter tokenLimiter = Config.RATE_LIMIT_PER_TOKEN > 0 ?
+            new RateLimiter(Config.RATE_LIMIT_PER_TOKEN, Config.RATE_LIMIT_PER_TOKEN_BURST, Config.RATE_LIMIT_MAX_CLIENTS) : null;
+    private final RateLimiter addressLimiter = Config.RATE_LIMIT_PER_ADDRESS > 0 ?
+            new RateLimiter(Config.RATE_LIMIT_PER_ADDRESS, Config.RATE_LIMIT_PER_ADDRESS_BURST, Config.RATE_LIMIT_MAX_CLIENTS) : null;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        long wait = 0;
+        if (addressLimiter != null) {
+            wait = addressLimiter.tryAcquire(servletRequest.getRemoteAddr());
+        }
+        Cookie authToken = requestContext.getCookies().get("auth");
+        if (wait == 0 && tokenLimiter != null && authToken != null) {
+            wait = tokenLimiter.tryAcquire(authToken.getValue());
+        }
+
+        if (wait > 0) {
+            LOGGER.debug("filter(): Rate limited request from " + servletRequest.getRemoteAddr());
+            requestContext.abortWith(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Math.max(TimeUnit.NANOSECONDS.toSeconds(wait), 1))
+                    .build());
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package se325.assignment01.concert.service.mapper;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import se325.assignment01.concert.common.dto.BookingDTO;
+import se325.assignment01.concert.common.dto.SeatDTO;
 import se325.assignment01.concert.service.domain.Booking;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class BookingMapper {
@@ -12,4 +21,57 @@ public class BookingMapper {
                 booking.getDate(),
                 booking.getSeats().stream().map(SeatMapper::toDTO).collect(Collectors.toList()));
     }
+
+    /**
+     * Makes DTOs from bookings and their seats selected as rows rather than entities, for reads that needn't load
+     * entities.
+     *
+     * @param bookings rows of booking id, concert id and date
+     * @param seats    rows of booking id, seat label and seat price, for the seats of those bookings
+     * @return a DTO for each booking, in the order of the booking rows
+     */
+    public static List<BookingDTO> toDTOs(List<Object[]> bookings, List<Object[]> seats) {
+        Map<Long, List<SeatDTO>> seatsByBooking = new HashMap<>();
+        for (Object[] seat : seats) {
+            seatsByBooking.computeIfAbsent((Long) seat[0], id -> new ArrayList<>())
+                    .add(new SeatDTO((String) seat[1], (BigDecimal) seat[2]));
+        }
+
+        List<BookingDTO> bookingDTOs = new ArrayList<>(bookings.size());
+        for (Object[] booking : bookings) {
+            bookingDTOs.add(new BookingDTO((Long) booking[1], (LocalDateTime) booking[2],
+                    seatsByBooking.getOrDefault((Long) booking[0], new ArrayList<>())));
+        }
+        return bookingDTOs;
+    }
+
+    /**
+     * Writes bookings and their seats, selected together as rows in booking id order, as a JSON array of DTOs. Each
+     * booking is written as soon as its last row has been read, so only one booking is held in memory at a time.
+     *
+     * @param rows rows of booking id, concert id, date, seat label and seat price - one for each seat, or a single
+     *             row with a null label for a booking without seats
+     */
+    public static void writeDTOs(Iterator<Object[]> rows, JsonGenerator json) throws IOException {
+        json.writeStartArray();
+        Long bookingId = null;
+        BookingDTO booking = null;
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            if (!row[0].equals(bookingId)) {
+                if (booking != null) {
+                    json.writeObject(booking);
+                }
+                bookingId = (Long) row[0];
+                booking = new BookingDTO((Long) row[1], (LocalDateTime) row[2], new ArrayList<>());
+            }
+            if (row[3] != null) {
+                booking.getSeats().add(new SeatDTO((String) row[3], (BigDecimal) row[4]));
+            }
+        }
+        if (booking != null) {
+            json.writeObject(booking);
+        }
+        json.writeEndArray();
+    }
 }
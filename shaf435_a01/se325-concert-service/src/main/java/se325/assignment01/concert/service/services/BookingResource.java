@@ -1,31 +1,52 @@
 package se325.assignment01.concert.service.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.query.NativeQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.*;
 import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.booking.BookingCommand;
 import se325.assignment01.concert.service.domain.Booking;
 import se325.assignment01.concert.service.domain.Concert;
-import se325.assignment01.concert.service.domain.Seat;
 import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.jaxrs.ConditionalResponses;
 import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.jaxrs.Page;
+import se325.assignment01.concert.service.jaxrs.RateLimited;
 import se325.assignment01.concert.service.mapper.BookingMapper;
-import se325.assignment01.concert.service.mapper.SeatMapper;
+import se325.assignment01.concert.service.util.AdmissionControl;
+import se325.assignment01.concert.service.util.AuthSessions;
+import se325.assignment01.concert.service.util.ConcertCatalogue;
+import se325.assignment01.concert.service.util.ExpiringCache;
+import se325.assignment01.concert.service.util.JsonBody;
+import se325.assignment01.concert.service.util.SeatAvailability;
+import se325.assignment01.concert.service.util.SeatHolds;
+import se325.assignment01.concert.service.util.SeatUpdates;
+import se325.assignment01.concert.service.util.TheatreLayout;
 
 import javax.persistence.*;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Path("/concert-service")
 @Produces(MediaType.APPLICATION_JSON)
@@ -35,27 +56,132 @@ public class BookingResource {
     private static final Logger LOGGER = LoggerFactory.getLogger(BookingResource.class);
     private final ExecutorService threadPool = Executors.newSingleThreadExecutor();
     private static final Map<ConcertInfoSubscriptionDTO, AsyncResponse> subscriptions = new ConcurrentHashMap<>();
+    private static final ExpiringCache<String, CompletableFuture<Long>> idempotentBookings =
+            new ExpiringCache<>(Config.IDEMPOTENCY_KEY_MAX_ENTRIES, Config.IDEMPOTENCY_KEY_SECONDS * 1000);
+    // The idempotency key each booking was made with, so that cancelling the booking can forget the key
+    private static final ExpiringCache<Long, String> idempotencyKeys =
+            new ExpiringCache<>(Config.IDEMPOTENCY_KEY_MAX_ENTRIES, Config.IDEMPOTENCY_KEY_SECONDS * 1000);
 
     @POST
     @Path("bookings")
-    public Response makeBooking(BookingRequestDTO requestDTO, @CookieParam("auth") Cookie authToken) {
+    @RateLimited
+    public Response makeBooking(BookingRequestDTO requestDTO, @CookieParam("auth") Cookie authToken,
+                                @CookieParam("admission") Cookie admission,
+                                @HeaderParam("Idempotency-Key") String idempotencyKey) {
         LOGGER.info("Received booking request");
         // Reject booking if auth token is not provided (i.e. not logged in)
         if (authToken == null) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
+        if (idempotencyKey == null) {
+            return Response.created(bookingLocation(this.createBooking(requestDTO, authToken, admission))).build();
+        }
+
+        // A retry with the same key gets the original booking's location, rather than making the booking again. If
+        // the original request is still in progress, the retry waits for it.
+        String key = authToken.getValue() + ":" + idempotencyKey;
+        CompletableFuture<Long> booking = new CompletableFuture<>();
+        CompletableFuture<Long> originalBooking = idempotentBookings.putIfAbsent(key, booking);
+        if (originalBooking != null) {
+            try {
+                return Response.created(bookingLocation(originalBooking.join())).header("Idempotent-Replayed", "true").build();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                LOGGER.error("makeBooking(): Original booking request failed", e.getCause());
+                throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
+            }
+        }
+
+        try {
+            long bookingId = this.createBooking(requestDTO, authToken, admission);
+            idempotencyKeys.put(bookingId, key);
+            booking.complete(bookingId);
+            return Response.created(bookingLocation(bookingId)).build();
+        } catch (Throwable e) {
+            // Failed bookings aren't remembered, so that a later retry can try again. Any retries already waiting
+            // must be woken whatever the failure, or they would wait forever
+            idempotentBookings.remove(key, booking);
+            booking.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @POST
+    @Path("bookings/best-available")
+    @RateLimited
+    public Response makeBestAvailableBooking(BestAvailableRequestDTO requestDTO, @CookieParam("auth") Cookie authToken,
+                                             @CookieParam("admission") Cookie admission) {
+        if (authToken == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        AuthSessions.Session session = this.findSession(authToken);
+        if (requestDTO == null || requestDTO.getDate() == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        LOGGER.info("Received best available booking request for " + requestDTO.getNumSeats() + " seats");
+
+        // Check admission before picking seats, as well as when booking them
+        this.checkAdmitted(requestDTO.getConcertId(), session.getUserId(), admission);
+
+        // Work out which rows to search
+        int fromRow = 0;
+        int toRow = TheatreLayout.NUM_ROWS;
+        if (requestDTO.getPriceBand() != null) {
+            TheatreLayout.PriceBand priceBand = TheatreLayout.priceBandNamed(requestDTO.getPriceBand());
+            if (priceBand == null) {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+            fromRow = TheatreLayout.firstRowOf(priceBand);
+            toRow = fromRow + priceBand.numRows;
+        }
+        if (requestDTO.getNumSeats() < 1 || requestDTO.getNumSeats() > TheatreLayout.NUM_SEATS_PER_ROW
+                || SeatAvailability.instance().numSeats(requestDTO.getDate()) == 0) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        // Pick seats and book them. If another booking takes them first, pick again without them.
+        BitSet excluded = new BitSet();
+        for (int attempt = 0; attempt < Config.BEST_AVAILABLE_ATTEMPTS; attempt++) {
+            excluded.or(SeatHolds.instance().heldSeats(requestDTO.getDate()));
+            List<String> seatLabels = SeatAvailability.instance().findAdjacentSeats(requestDTO.getDate(),
+                    requestDTO.getNumSeats(), fromRow, toRow, excluded);
+            if (seatLabels == null) {
+                // Not enough adjacent seats left
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
+
+            try {
+                long bookingId = this.createBooking(new BookingRequestDTO(requestDTO.getConcertId(), requestDTO.getDate(), seatLabels), authToken, admission);
+                return Response.created(bookingLocation(bookingId)).build();
+            } catch (WebApplicationException e) {
+                int status = e.getResponse().getStatus();
+                if (status != Response.Status.FORBIDDEN.getStatusCode() && status != Response.Status.CONFLICT.getStatusCode()) {
+                    throw e;
+                }
+                seatLabels.forEach(label -> excluded.set(TheatreLayout.indexOf(label)));
+            }
+        }
+        throw new WebApplicationException(Response.Status.CONFLICT);
+    }
+
+    private long createBooking(BookingRequestDTO requestDTO, Cookie authToken, Cookie admission) {
+        // Check if a user exists with provided auth token
+        AuthSessions.Session session = this.findSession(authToken);
+
+        AdmissionControl.Ticket ticket = this.checkAdmitted(requestDTO.getConcertId(), session.getUserId(), admission);
 
         EntityManager em = PersistenceManager.instance().createEntityManager();
+        BookingCommand command;
+        SeatHolds.Hold hold = null;
         try {
             em.getTransaction().begin();
+            User user = em.getReference(User.class, session.getUserId());
 
-            // Check if a user exists with provided auth token
-            TypedQuery<User> query = em.createQuery("select u from User u where u.authToken = :authToken", User.class)
-                    .setParameter("authToken", authToken.getValue());
-            User user = query.getSingleResult();
-
-            // Find concert with specified ID
-            Concert concert = em.find(Concert.class, requestDTO.getConcertId());
+            // Find concert with specified ID, with its dates in the same query
+            Concert concert = em.find(Concert.class, requestDTO.getConcertId(),
+                    Map.of(GraphSemantic.FETCH.getJpaHintName(), em.getEntityGraph(Concert.FULL)));
             if (concert == null) {
                 throw new WebApplicationException(Response.Status.BAD_REQUEST);
             }
@@ -65,74 +191,144 @@ public class BookingResource {
                 throw new WebApplicationException(Response.Status.BAD_REQUEST);
             }
 
-            // Retrieve all Seat objects wanting to be booked that are currently unbooked
-            TypedQuery<Seat> seatQuery = em.createQuery("select s from Seat s where s.date = :date AND s.label IN :labels AND s.isBooked = false", Seat.class)
-                    .setParameter("date", requestDTO.getDate())
-                    .setParameter("labels", requestDTO.getSeatLabels())
-                    .setLockMode(LockModeType.OPTIMISTIC);
-            List<Seat> requestedSeats = seatQuery.getResultList();
-
-            // Check if any requested seats are already booked
-            if (requestedSeats.size() != requestDTO.getSeatLabels().size()) {
+            // When confirming a hold, book the held seats. The hold must belong to this user and be for the requested
+            // date. If it has expired, the requested seats are booked instead, as long as nobody else holds them.
+            List<String> seatLabels = requestDTO.getSeatLabels();
+            if (requestDTO.getHoldId() != null) {
+                hold = SeatHolds.instance().get(requestDTO.getHoldId());
+                if (hold != null && (hold.getUserId() != session.getUserId() || !hold.getDate().equals(requestDTO.getDate()))) {
+                    throw new WebApplicationException(Response.Status.FORBIDDEN);
+                }
+            }
+            if (hold != null) {
+                seatLabels = hold.getSeatLabels();
+            } else if (SeatHolds.instance().anyHeldByOthers(session.getUserId(), requestDTO.getDate(), seatLabels)) {
                 throw new WebApplicationException(Response.Status.FORBIDDEN);
             }
 
-            // All checks passed; mark seats as booked and create Booking for user
-            requestedSeats.forEach(seat -> seat.setBooked(true));
-            Booking booking = new Booking(concert, user, requestDTO.getDate(), new HashSet<>(requestedSeats));
-            em.persist(booking);
-            em.getTransaction().commit();
+            // Reject seats already known to be booked without going to the database
+            if (SeatAvailability.instance().anyUnavailable(requestDTO.getDate(), seatLabels)) {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
 
-            // Run check to see if any subscribers need to be notified of booking
-            int totalSeats = em.createQuery("select s from Seat s where s.date = :date", Seat.class)
-                    .setParameter("date", requestDTO.getDate())
-                    .getResultList()
-                    .size();
-            int unbookedSeats = em.createQuery("select s from Seat s where s.date = :date AND s.isBooked = false", Seat.class)
-                    .setParameter("date", requestDTO.getDate())
-                    .getResultList()
-                    .size();
-            this.notifySubscribers(concert, requestDTO.getDate(), totalSeats, unbookedSeats);
-
-            Response.ResponseBuilder rb = Response.created(URI.create("/concert-service/bookings/" + booking.getId()));
-            return rb.build();
+            command = new BookingCommand(session.getUserId(), concert.getId(), requestDTO.getDate(), seatLabels);
+            if (Config.BOOKING_ENGINE == null) {
+                // Mark the requested seats as booked and create Booking for user
+                Booking booking = Config.SEAT_CLAIM_STRATEGY.claim(em, concert, user, requestDTO.getDate(), seatLabels);
+                if (booking == null) {
+                    // At least one requested seat is already booked
+                    throw new WebApplicationException(Response.Status.FORBIDDEN);
+                }
+                em.getTransaction().commit();
+                SeatAvailability.instance().markBooked(requestDTO.getDate(), seatLabels);
+                command.getResult().complete(booking.getId());
+            }
         } catch (OptimisticLockException e) {
             // Could not lock Seats for Booking as another Booking has booked them; return 409
             throw new WebApplicationException(Response.Status.CONFLICT);
-        } catch (NoResultException e) {
-            // No user found with provided token; return 401
-            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        } catch (RollbackException e) {
+            // With JDBC batching the seats' version checks may only fail when the transaction commits
+            if (e.getCause() instanceof OptimisticLockException) {
+                throw new WebApplicationException(Response.Status.CONFLICT);
+            }
+            throw e;
         } finally {
+            // Release any seats claimed by a booking that didn't go through
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
+
+        // Otherwise hand the booking over to the booking engine, which claims the seats in a transaction of its own.
+        // This happens after the EntityManager is closed so that no connection is held while the booking is queued.
+        long bookingId = Config.BOOKING_ENGINE == null ? command.getResult().join() : Config.BOOKING_ENGINE.book(command);
+        if (hold != null) {
+            SeatHolds.instance().release(hold);
+        }
+        if (ticket != null) {
+            // Let the next client in the waiting room in
+            AdmissionControl.instance().booked(ticket);
+        }
+
+        // Run check to see if any subscribers need to be notified of booking
+        this.notifySubscribers(command.getConcertId(), command.getDate());
+
+        return bookingId;
+    }
+
+    private static URI bookingLocation(long bookingId) {
+        return URI.create("/concert-service/bookings/" + bookingId);
     }
 
     @GET
     @Path("bookings")
-    public Response getBookings(@CookieParam("auth") Cookie authToken) {
+    public Response getBookings(@QueryParam("after") Long after, @QueryParam("limit") Integer limit,
+                                @CookieParam("auth") Cookie authToken, @Context UriInfo uriInfo) {
         LOGGER.info("Retrieving all Bookings");
         if (authToken == null) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
 
+        AuthSessions.Session session = this.findSession(authToken);
+        long afterId = after == null ? 0L : after;
+
+        // A booking history that isn't paged can be any length, so it is streamed rather than held in memory
+        if (limit == null) {
+            return Response.ok(this.streamBookings(session.getUserId(), afterId), MediaType.APPLICATION_JSON_TYPE).build();
+        }
+
+        // Bookings are only read, so they are selected as rows rather than loaded as entities, outside a transaction
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
-            em.getTransaction().begin();
+            // Get a page of the authenticated user's Bookings. Pages are found with the (USER_ID, ID) index,
+            // so a page deep into a long booking history is found as quickly as the first
+            List<Object[]> bookings = em.createQuery("select b.id, b.concert.id, b.date from Booking b where b.user.id = :userId and b.id > :after order by b.id", Object[].class)
+                    .setParameter("userId", session.getUserId())
+                    .setParameter("after", afterId)
+                    .setMaxResults(Page.fetchSize(limit))
+                    .getResultList();
+            Page<Object[]> page = Page.of(bookings, limit, booking -> (Long) booking[0], uriInfo);
 
-            // Get all Bookings for provided auth token
-            TypedQuery<Booking> query = em.createQuery("select b from Booking b where b.user.authToken = :authToken", Booking.class)
-                    .setParameter("authToken", authToken.getValue());
-            List<Booking> bookings = query.getResultList();
-            List<BookingDTO> bookingDTOS = bookings.stream().map(BookingMapper::toDTO).collect(Collectors.toList());
+            // Then the seats of all of those Bookings at once
+            List<Object[]> seats = new ArrayList<>();
+            if (!page.getItems().isEmpty()) {
+                long lastId = (Long) page.getItems().get(page.getItems().size() - 1)[0];
+                seats = em.createQuery("select b.id, s.label, s.price from Booking b join b.seats s where b.user.id = :userId and b.id > :after and b.id <= :last", Object[].class)
+                        .setParameter("userId", session.getUserId())
+                        .setParameter("after", afterId)
+                        .setParameter("last", lastId)
+                        .getResultList();
+            }
+            List<BookingDTO> bookingDTOS = BookingMapper.toDTOs(page.getItems(), seats);
             GenericEntity<List<BookingDTO>> entity = new GenericEntity<>(bookingDTOS) {};
 
             Response.ResponseBuilder rb = Response.ok(entity);
-            return rb.build();
+            return page.addLinks(rb).build();
         } finally {
             em.close();
         }
     }
 
+    // Writes the user's Bookings as they are read from the database, scrolling through the rows a fetch at a time. The
+    // rows are selected when the response is sent, after the resource method has returned, so the EntityManager is
+    // opened then too
+    private StreamingOutput streamBookings(long userId, long afterId) {
+        return output -> {
+            EntityManager em = PersistenceManager.instance().createEntityManager();
+            try (Stream<Object[]> rows = em.createQuery("select b.id, b.concert.id, b.date, s.label, s.price from Booking b left join b.seats s where b.user.id = :userId and b.id > :after order by b.id", Object[].class)
+                    .setParameter("userId", userId)
+                    .setParameter("after", afterId)
+                    .setHint(QueryHints.FETCH_SIZE, Config.STREAMING_FETCH_SIZE)
+                    .getResultStream();
+                 JsonGenerator json = JsonBody.generator(output)) {
+                BookingMapper.writeDTOs(rows.iterator(), json);
+            } finally {
+                em.close();
+            }
+        };
+    }
+
     @GET
     @Path("bookings/{id}")
     public Response getBooking(@PathParam("id") long id, @CookieParam("auth") Cookie authToken) {
@@ -142,23 +338,28 @@ public class BookingResource {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
 
+        AuthSessions.Session session = this.findSession(authToken);
+
+        // The Booking is only read, so it is selected as rows rather than loaded as an entity, outside a transaction
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
-            em.getTransaction().begin();
-
-            // Fetch the Booking object
-            Booking booking = em.find(Booking.class, id);
-            if (booking == null) {
+            // Fetch the Booking
+            List<Object[]> bookings = em.createQuery("select b.id, b.concert.id, b.date, b.user.id from Booking b where b.id = :id", Object[].class)
+                    .setParameter("id", id)
+                    .getResultList();
+            if (bookings.isEmpty()) {
                 throw new WebApplicationException(Response.Status.NOT_FOUND);
             }
 
             // Check that the Booking belongs to the User
-            User user = booking.getUser();
-            if (!user.getAuthToken().equals(authToken.getValue())) {
+            if ((Long) bookings.get(0)[3] != session.getUserId()) {
                 throw new WebApplicationException(Response.Status.FORBIDDEN);
             }
 
-            BookingDTO bookingDTO = BookingMapper.toDTO(booking);
+            List<Object[]> seats = em.createQuery("select b.id, s.label, s.price from Booking b join b.seats s where b.id = :id", Object[].class)
+                    .setParameter("id", id)
+                    .getResultList();
+            BookingDTO bookingDTO = BookingMapper.toDTOs(bookings, seats).get(0);
             Response.ResponseBuilder rb = Response.ok(bookingDTO);
             return rb.build();
         } finally {
@@ -166,8 +367,84 @@ public class BookingResource {
         }
     }
 
+    @DELETE
+    @Path("bookings/{id}")
+    public Response cancelBooking(@PathParam("id") long id, @CookieParam("auth") Cookie authToken) {
+        LOGGER.info("Cancelling booking with ID " + id);
+        // Reject request if auth token not provided
+        if (authToken == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+
+        AuthSessions.Session session = this.findSession(authToken);
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        LocalDateTime date;
+        long concertId;
+        List<String> seatLabels;
+        try {
+            em.getTransaction().begin();
+
+            // Fetch only what's needed to release the Booking, rather than the Booking and all its Seats
+            List<Object[]> bookings = em.createQuery("select b.date, b.concert.id, b.user.id from Booking b where b.id = :id", Object[].class)
+                    .setParameter("id", id)
+                    .getResultList();
+            if (bookings.isEmpty()) {
+                throw new WebApplicationException(Response.Status.NOT_FOUND);
+            }
+            date = (LocalDateTime) bookings.get(0)[0];
+            concertId = (Long) bookings.get(0)[1];
+
+            // Check that the Booking belongs to the User
+            if ((Long) bookings.get(0)[2] != session.getUserId()) {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
+
+            // Release the seats in one statement, then remove the Booking and its join rows
+            seatLabels = em.createQuery("select s.label from Booking b join b.seats s where b.id = :id", String.class)
+                    .setParameter("id", id)
+                    .getResultList();
+            em.createQuery("update Seat s set s.isBooked = false, s.version = s.version + 1 where s.id in (select bs.id from Booking b join b.seats bs where b.id = :id)")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            // Telling Hibernate that only BOOKING_SEATS changes leaves the cached concerts and performers in place
+            em.createNativeQuery("delete from BOOKING_SEATS where BOOKING_ID = :id")
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedQuerySpace("BOOKING_SEATS")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            // If another cancellation of the Booking committed after it was read here, there is nothing left to delete.
+            // Only the cancellation that deletes the Booking may release its seats, as they may have been rebooked
+            int deleted = em.createQuery("delete from Booking b where b.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            if (deleted != 1) {
+                throw new WebApplicationException(Response.Status.NOT_FOUND);
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+
+        SeatAvailability.instance().markReleased(date, seatLabels);
+        this.notifySubscribers(concertId, date);
+
+        // A retry of the original request now makes a new booking, rather than pointing at the cancelled one
+        String idempotencyKey = idempotencyKeys.get(id);
+        if (idempotencyKey != null) {
+            idempotentBookings.remove(idempotencyKey);
+            idempotencyKeys.remove(id);
+        }
+
+        return Response.noContent().build();
+    }
+
     @POST
     @Path("subscribe/concertInfo")
+    @RateLimited
     public void subscribeToConcertInfo(@Suspended AsyncResponse sub,
                                        @CookieParam("auth") Cookie authToken,
                                        ConcertInfoSubscriptionDTO concertInfoSubscriptionDTO) {
@@ -179,73 +456,203 @@ public class BookingResource {
             });
             return;
         }
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-
-            // Authenticate user
-            User user = em.createQuery("select u from User u where u.authToken = :authToken", User.class)
-                    .setParameter("authToken", authToken.getValue())
-                    .getSingleResult();
-
-            // Find Concert to which subscription is related
-            Concert concert = em.find(Concert.class, concertInfoSubscriptionDTO.getConcertId());
-            if (concert == null || !concert.getDates().contains(concertInfoSubscriptionDTO.getDate())) {
-                // Concert doesn't exist or date provided is incorrect
-                threadPool.submit(() -> {
-                   sub.resume(Response.status(Response.Status.BAD_REQUEST).build());
-                });
-                return;
-            }
-
-            subscriptions.put(concertInfoSubscriptionDTO, sub);
-        } catch (NoResultException e) {
+        // Authenticate user
+        if (AuthSessions.instance().find(authToken.getValue()) == null) {
             // No user exists with the provided auth token; could not authenticate
             threadPool.submit(() -> {
                 sub.resume(Response.status(Response.Status.UNAUTHORIZED).build());
             });
-        } finally {
-            em.close();
+            return;
+        }
+
+        // Find Concert to which subscription is related, in the catalogue rather than the database
+        ConcertDTO concert = ConcertCatalogue.instance().snapshot().getConcert(concertInfoSubscriptionDTO.getConcertId());
+        if (concert == null || !concert.getDates().contains(concertInfoSubscriptionDTO.getDate())) {
+            // Concert doesn't exist or date provided is incorrect
+            threadPool.submit(() -> {
+               sub.resume(Response.status(Response.Status.BAD_REQUEST).build());
+            });
+            return;
         }
+
+        subscriptions.put(concertInfoSubscriptionDTO, sub);
     }
 
     @GET
     @Path("seats/{date}")
-    public Response getSeats(@PathParam("date") LocalDateTimeParam dateTimeParam, @QueryParam("status") BookingStatus bookingStatus) {
-        LOGGER.info("Retrieving seats for " + dateTimeParam.getLocalDateTime());
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
+    @Produces({MediaType.APPLICATION_JSON, SeatMapDTO.MEDIA_TYPE})
+    public Response getSeats(@PathParam("date") LocalDateTimeParam dateTimeParam, @QueryParam("status") BookingStatus bookingStatus,
+                             @QueryParam("format") String format, @Context Request request, @Context HttpHeaders headers) {
+        LocalDateTime date = dateTimeParam.getLocalDateTime();
+        LOGGER.info("Retrieving seats for " + date);
+        // Seat state is served from the in-memory availability index rather than the database
 
-            // Get all seats for given date with given booking status
-            TypedQuery<Seat> query;
-            if (bookingStatus == BookingStatus.Booked || bookingStatus == BookingStatus.Unbooked) {
-                query = em.createQuery("select s from Seat s where s.date = :date AND s.isBooked = :isBooked", Seat.class)
-                        .setParameter("date", dateTimeParam.getLocalDateTime())
-                        .setParameter("isBooked", bookingStatus == BookingStatus.Booked);
-            } else if (bookingStatus == BookingStatus.Any){
-                query = em.createQuery("select s from Seat s where s.date = :date", Seat.class)
-                        .setParameter("date", dateTimeParam.getLocalDateTime());
-            } else {
-                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        // A seat map is sent to clients that ask for its media type, or for format=map if they can't set Accept
+        if ("map".equals(format) || acceptsSeatMap(headers)) {
+            return this.getSeatMap(date, request);
+        }
+
+        if (bookingStatus == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        // Clients that already have the current seats for this date get 304 Not Modified
+        String version = SeatAvailability.instance().stateVersion(date);
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, version,
+                () -> new GenericEntity<List<SeatDTO>>(SeatAvailability.instance().getSeats(date, bookingStatus)) {});
+        return rb.type(MediaType.APPLICATION_JSON_TYPE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    private Response getSeatMap(LocalDateTime date, Request request) {
+        // Unlike a list of seats, a seat map says that every seat it doesn't mark booked is free, so there must be seats
+        if (SeatAvailability.instance().numSeats(date) == 0) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+
+        // The seat map is a different representation to the list of seats, so it has a different ETag
+        String version = SeatAvailability.instance().stateVersion(date) + "-map";
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, version,
+                () -> SeatAvailability.instance().getSeatMap(date));
+        return rb.type(SeatMapDTO.MEDIA_TYPE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    private static boolean acceptsSeatMap(HttpHeaders headers) {
+        for (MediaType type : headers.getAcceptableMediaTypes()) {
+            if (!type.isWildcardType() && !type.isWildcardSubtype() && type.isCompatible(MediaType.valueOf(SeatMapDTO.MEDIA_TYPE))) {
+                return true;
             }
-            List<Seat> seatList = query.getResultList();
-            List<SeatDTO> seatDTOs = seatList.stream().map(SeatMapper::toDTO).collect(Collectors.toList());
-            GenericEntity<List<SeatDTO>> genericEntity = new GenericEntity<>(seatDTOs) {};
+        }
+        return false;
+    }
 
-            Response.ResponseBuilder rb = Response.ok(genericEntity);
-            return rb.build();
-        } finally {
-            em.close();
+    @GET
+    @Path("seats/{date}/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RateLimited
+    public void streamSeats(@PathParam("date") LocalDateTimeParam dateTimeParam, @Context SseEventSink sink,
+                            @Context Sse sse) {
+        LocalDateTime date = dateTimeParam.getLocalDateTime();
+        LOGGER.info("Streaming seats for " + date);
+        // Clients are sent which seats are booked and released as it happens, rather than polling for the seats
+        if (SeatAvailability.instance().numSeats(date) == 0) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        SeatUpdates.instance().subscribe(date, sink, sse);
+    }
+
+    @POST
+    @Path("seats/{date}/holds")
+    @RateLimited
+    public Response holdSeats(@PathParam("date") LocalDateTimeParam dateTimeParam, List<String> seatLabels,
+                              @CookieParam("auth") Cookie authToken, @CookieParam("admission") Cookie admission) {
+        LocalDateTime date = dateTimeParam.getLocalDateTime();
+        LOGGER.info("Received request to hold seats for " + date);
+        if (authToken == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        if (seatLabels == null || seatLabels.isEmpty() || seatLabels.size() > Config.SEAT_HOLD_MAX_SEATS
+                || SeatAvailability.instance().numSeats(date) == 0) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        AuthSessions.Session session = this.findSession(authToken);
+        this.checkAdmitted(date, session.getUserId(), admission);
+
+        // Hold fails if any seat is booked or held by someone else
+        SeatHolds.Hold hold = SeatHolds.instance().place(session.getUserId(), date, seatLabels);
+        if (hold == null) {
+            throw new WebApplicationException(Response.Status.FORBIDDEN);
+        }
+
+        SeatHoldDTO holdDTO = new SeatHoldDTO(hold.getId(), date, hold.getSeatLabels(), hold.getExpiry());
+        Response.ResponseBuilder rb = Response.created(URI.create("/concert-service/seats/" + LocalDateTimeParam.FORMATTER.format(date) + "/holds/" + hold.getId()))
+                .entity(holdDTO);
+        return rb.build();
+    }
+
+    @DELETE
+    @Path("seats/{date}/holds/{id}")
+    public Response releaseHold(@PathParam("date") LocalDateTimeParam dateTimeParam, @PathParam("id") String id,
+                                @CookieParam("auth") Cookie authToken) {
+        LOGGER.info("Releasing seat hold " + id);
+        if (authToken == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+
+        AuthSessions.Session session = this.findSession(authToken);
+
+        // Only the user holding the seats may release them
+        SeatHolds.Hold hold = SeatHolds.instance().get(id);
+        if (hold == null || hold.getUserId() != session.getUserId() || !hold.getDate().equals(dateTimeParam.getLocalDateTime())) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        SeatHolds.instance().release(hold);
+
+        return Response.noContent().build();
+    }
+
+    @GET
+    @Path("seats/{date}/remaining")
+    public Response getSeatsRemaining(@PathParam("date") LocalDateTimeParam dateTimeParam) {
+        LocalDateTime date = dateTimeParam.getLocalDateTime();
+        LOGGER.info("Retrieving number of seats remaining for " + date);
+        int totalSeats = SeatAvailability.instance().numSeats(date);
+        if (totalSeats == 0) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+
+        int unbookedSeats = totalSeats - SeatAvailability.instance().numBooked(date);
+        Response.ResponseBuilder rb = Response.ok(new ConcertInfoNotificationDTO(unbookedSeats));
+        return rb.build();
+    }
+
+    // When the waiting room is in use, only a user admitted from the concert's queue may book, with their own ticket.
+    // Anyone else is told to come back later with 429, and a user still in the queue is told roughly when.
+    private AdmissionControl.Ticket checkAdmitted(long concertId, long userId, Cookie admission) {
+        return this.checkAdmitted(ticket -> ticket.getConcertId() == concertId, userId, admission);
+    }
+
+    // Holding seats needs the same admission as booking them, from the queue for a concert on the date being held
+    private AdmissionControl.Ticket checkAdmitted(LocalDateTime date, long userId, Cookie admission) {
+        return this.checkAdmitted(ticket -> {
+            ConcertDTO concert = ConcertCatalogue.instance().snapshot().getConcert(ticket.getConcertId());
+            return concert != null && concert.getDates().contains(date);
+        }, userId, admission);
+    }
+
+    private AdmissionControl.Ticket checkAdmitted(Predicate<AdmissionControl.Ticket> forConcert, long userId, Cookie admission) {
+        if (!AdmissionControl.instance().isEnabled()) {
+            return null;
+        }
+        AdmissionControl.Ticket ticket = admission == null ? null : AdmissionControl.instance().get(admission.getValue());
+        if (ticket == null || !forConcert.test(ticket) || ticket.getUserId() != userId) {
+            throw new WebApplicationException(Response.Status.TOO_MANY_REQUESTS);
+        }
+        if (!ticket.isAdmitted()) {
+            throw new WebApplicationException(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Math.max(ticket.getEstimatedWaitSeconds(), 1))
+                    .build());
+        }
+        return ticket;
+    }
+
+    // Find the session for the provided auth token, or fail with 401 if there is none
+    private AuthSessions.Session findSession(Cookie authToken) {
+        AuthSessions.Session session = AuthSessions.instance().find(authToken.getValue());
+        if (session == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
+        return session;
     }
 
     // Notify subscribers if the subscribed Concert has seats below the prescribed threshold
-    private void notifySubscribers(Concert concert, LocalDateTime concertDate, int totalSeats, int unbookedSeats) {
+    private void notifySubscribers(long concertId, LocalDateTime concertDate) {
+        int totalSeats = SeatAvailability.instance().numSeats(concertDate);
+        int unbookedSeats = totalSeats - SeatAvailability.instance().numBooked(concertDate);
         int percentageBooked = (int) Math.round((((double)(totalSeats - unbookedSeats) / totalSeats) * 100));
         for (Map.Entry<ConcertInfoSubscriptionDTO, AsyncResponse> subscription : subscriptions.entrySet()) {
             // If notification pertains to same Concert and Date as subscription
-            if (subscription.getKey().getConcertId() == concert.getId() && subscription.getKey().getDate().equals(concertDate)) {
+            if (subscription.getKey().getConcertId() == concertId && subscription.getKey().getDate().equals(concertDate)) {
                 if (percentageBooked > subscription.getKey().getPercentageBooked()) {
                     // Notify subscriber with notification
                     ConcertInfoNotificationDTO notificationDTO = new ConcertInfoNotificationDTO(unbookedSeats);
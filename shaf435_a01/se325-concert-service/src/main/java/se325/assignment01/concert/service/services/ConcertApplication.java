@@ -4,6 +4,7 @@ import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
 
 import se325.assignment01.concert.service.domain.Performer;
+import se325.assignment01.concert.service.jaxrs.RateLimitFilter;
 import se325.assignment01.concert.service.util.ConcertUtils;
 
 import java.util.HashSet;
@@ -25,7 +26,9 @@ public class ConcertApplication extends Application {
         classes.add(PerformerResource.class);
         classes.add(UserResource.class);
         classes.add(BookingResource.class);
+        classes.add(WaitingRoomResource.class);
         singletons.add(PersistenceManager.instance());
+        singletons.add(new RateLimitFilter());
 
         ConcertUtils.initConcerts();
     }
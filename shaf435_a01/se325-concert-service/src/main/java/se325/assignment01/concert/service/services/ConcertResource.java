@@ -3,21 +3,22 @@ package se325.assignment01.concert.service.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.ConcertDTO;
-import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
 import se325.assignment01.concert.common.dto.PerformerDTO;
-import se325.assignment01.concert.service.domain.Concert;
-import se325.assignment01.concert.service.domain.Performer;
-import se325.assignment01.concert.service.mapper.ConcertMapper;
-import se325.assignment01.concert.service.mapper.PerformerMapper;
+import se325.assignment01.concert.service.jaxrs.ConditionalResponses;
+import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.jaxrs.Page;
+import se325.assignment01.concert.service.util.ConcertCatalogue;
 
-import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/concert-service")
 @Produces(MediaType.APPLICATION_JSON)
@@ -28,67 +29,57 @@ public class ConcertResource {
 
     @GET
     @Path("concerts/{id}")
-    public Response getConcert(@PathParam("id") long id) {
+    public Response getConcert(@PathParam("id") long id, @Context Request request) {
         LOGGER.info("Retrieving concert with ID: " + id);
-        EntityManager em = PersistenceManager.instance().createEntityManager();
+        // Concerts are served from the in-memory catalogue rather than the database
+        ConcertCatalogue.Snapshot catalogue = ConcertCatalogue.instance().snapshot();
+        ConcertDTO concertDTO = catalogue.getConcert(id);
 
-        try {
-            em.getTransaction().begin();
-
-            // Load Concert object
-            Concert concert = em.find(Concert.class, id);
-            em.getTransaction().commit();
-
-            // Concert does not exist
-            if (concert == null) {
-                throw new WebApplicationException(Response.Status.NOT_FOUND);
-            }
-
-            Response.ResponseBuilder rb = Response.ok(ConcertMapper.toDTO(concert));
-            return rb.build();
-        } finally {
-            em.close();
+        // Concert does not exist
+        if (concertDTO == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+
+        // Clients that already have this version of the catalogue get 304 Not Modified
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, Long.toString(catalogue.getVersion()), () -> concertDTO);
+        return rb.build();
     }
 
     @GET
     @Path("concerts")
-    public Response getAllConcerts() {
+    public Response getAllConcerts(@QueryParam("after") Long after, @QueryParam("limit") Integer limit,
+                                   @QueryParam("from") LocalDateTimeParam from, @QueryParam("to") LocalDateTimeParam to,
+                                   @Context Request request, @Context HttpHeaders headers, @Context UriInfo uriInfo) {
         LOGGER.info("Retrieving all concerts");
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-            // Select all concerts and create DTOs
-            TypedQuery<Concert> concertTypedQuery = em.createQuery("select c from Concert c", Concert.class);
-            List<Concert> concertList = concertTypedQuery.getResultList();
-            List<ConcertDTO> concertDTOList = concertList.stream().map(ConcertMapper::toDTO).collect(Collectors.toList());
-            GenericEntity<List<ConcertDTO>> genericEntity = new GenericEntity<>(concertDTOList) {};
+        ConcertCatalogue.Snapshot catalogue = ConcertCatalogue.instance().snapshot();
+        String version = Long.toString(catalogue.getVersion());
 
-            Response.ResponseBuilder rb = Response.ok(genericEntity);
+        // The catalogue holds the whole list already serialised, so sending it is just copying bytes
+        if (after == null && limit == null && from == null && to == null) {
+            Response.ResponseBuilder rb = ConditionalResponses.ok(request, headers, version, catalogue.getConcertsBody());
             return rb.build();
-        } finally {
-            em.close();
         }
+
+        // Otherwise send one page of the concerts, optionally only those with a date in the given range
+        LocalDateTime fromDate = from == null ? null : from.getLocalDateTime();
+        LocalDateTime toDate = to == null ? null : to.getLocalDateTime();
+        List<ConcertDTO> concerts = catalogue.findConcerts(after == null ? 0 : after, fromDate, toDate, Page.fetchSize(limit));
+        Page<ConcertDTO> page = Page.of(concerts, limit, ConcertDTO::getId, uriInfo);
+
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, version,
+                () -> new GenericEntity<List<ConcertDTO>>(page.getItems()) {});
+        return page.addLinks(rb).build();
     }
 
     @GET
     @Path("concerts/summaries")
-    public Response getConcertSummaries() {
+    public Response getConcertSummaries(@Context Request request, @Context HttpHeaders headers) {
         LOGGER.info("Retrieving all concert summaries");
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-
-            TypedQuery<Concert> concertTypedQuery = em.createQuery("select c from Concert c", Concert.class);
-            List<Concert> concertList = concertTypedQuery.getResultList();
-            List<ConcertSummaryDTO> concertSummaryDTOS = concertList.stream().map(ConcertMapper::toSummaryDTO).collect(Collectors.toList());
-            GenericEntity<List<ConcertSummaryDTO>> genericEntity = new GenericEntity<>(concertSummaryDTOS) {};
+        ConcertCatalogue.Snapshot catalogue = ConcertCatalogue.instance().snapshot();
 
-            Response.ResponseBuilder rb = Response.ok(genericEntity);
-            return rb.build();
-        } finally {
-            em.close();
-        }
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, headers, Long.toString(catalogue.getVersion()),
+                catalogue.getConcertSummariesBody());
+        return rb.build();
     }
 
 }
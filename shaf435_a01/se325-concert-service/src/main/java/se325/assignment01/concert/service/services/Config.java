@@ -0,0 +1,140 @@
+package se325.assignment01.concert.service.services;
+
+import se325.assignment01.concert.service.booking.BookingEngine;
+import se325.assignment01.concert.service.booking.SeatClaimStrategy;
+import se325.assignment01.concert.service.util.SignedTokens;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+/**
+ * Runtime configuration for the concert service. Each setting can be overridden with a system property, e.g.
+ * <code>-Dconcert.booking.strategy=conditional-update</code>.
+ */
+public class Config {
+
+    /**
+     * How seats are claimed when making a booking; see {@link SeatClaimStrategy#forName(String)}.
+     */
+    public static final SeatClaimStrategy SEAT_CLAIM_STRATEGY =
+            SeatClaimStrategy.forName(System.getProperty("concert.booking.strategy", "optimistic"));
+
+    /**
+     * The most bookings a booking engine writes in one transaction.
+     */
+    public static final int BOOKING_BATCH_SIZE = Integer.getInteger("concert.booking.batchSize", 100);
+
+    /**
+     * How long the group-commit booking engine waits for more bookings to arrive before writing a batch.
+     */
+    public static final long BOOKING_GROUP_COMMIT_MILLIS = Long.getLong("concert.booking.groupCommitMillis", 5);
+
+    /**
+     * Which engine writes bookings; see {@link BookingEngine#forName(String)}. Null when each booking request
+     * writes its own booking, which is the default.
+     */
+    public static final BookingEngine BOOKING_ENGINE =
+            BookingEngine.forName(System.getProperty("concert.booking.engine", "direct"));
+
+    /**
+     * How long seats placed on hold stay held before they are released, if the hold isn't confirmed by a booking.
+     */
+    public static final long SEAT_HOLD_SECONDS = Long.getLong("concert.hold.seconds", 120);
+
+    /**
+     * The most seats one hold may take, so that a single user can't hold a whole performance.
+     */
+    public static final int SEAT_HOLD_MAX_SEATS = Integer.getInteger("concert.hold.maxSeats", TheatreLayout.NUM_SEATS_PER_ROW);
+
+    /**
+     * How many booking idempotency keys are remembered, and for how long, so that retried booking requests get the
+     * original response.
+     */
+    public static final int IDEMPOTENCY_KEY_MAX_ENTRIES = Integer.getInteger("concert.idempotency.maxEntries", 10000);
+    public static final long IDEMPOTENCY_KEY_SECONDS = Long.getLong("concert.idempotency.seconds", 3600);
+
+    /**
+     * How many times a best-available booking picks new seats after losing the ones it picked to another booking.
+     */
+    public static final int BEST_AVAILABLE_ATTEMPTS = Integer.getInteger("concert.bestAvailable.attempts", 3);
+
+    /**
+     * How many clients per concert may be booking at once when the waiting room is in use. 0, the default, turns the
+     * waiting room off so that anyone can book at any time.
+     */
+    public static final int ADMISSION_ACTIVE_BOOKERS = Integer.getInteger("concert.admission.activeBookers", 0);
+
+    /**
+     * How long a client admitted from the waiting room has to book before their turn passes to the next client.
+     */
+    public static final long ADMISSION_SECONDS = Long.getLong("concert.admission.seconds", 300);
+
+    /**
+     * How often a client in the waiting room must check its ticket to keep its place in the queue.
+     */
+    public static final long ADMISSION_POLL_SECONDS = Long.getLong("concert.admission.pollSeconds", 60);
+
+    /**
+     * How many booking and subscription requests per second are allowed for each auth token and each client address,
+     * and how many may be made at once after a pause. A rate of 0 turns that limit off.
+     */
+    public static final int RATE_LIMIT_PER_TOKEN = Integer.getInteger("concert.rateLimit.perToken", 10);
+    public static final int RATE_LIMIT_PER_TOKEN_BURST = Integer.getInteger("concert.rateLimit.perTokenBurst", 20);
+    public static final int RATE_LIMIT_PER_ADDRESS = Integer.getInteger("concert.rateLimit.perAddress", 50);
+    public static final int RATE_LIMIT_PER_ADDRESS_BURST = Integer.getInteger("concert.rateLimit.perAddressBurst", 100);
+
+    /**
+     * How many auth tokens and client addresses the rate limits are tracked for before idle ones are forgotten.
+     */
+    public static final int RATE_LIMIT_MAX_CLIENTS = Integer.getInteger("concert.rateLimit.maxClients", 100000);
+
+    /**
+     * How many logged in users are remembered, and for how long, so that requests can be authenticated without
+     * looking up the user in the database.
+     */
+    public static final int AUTH_SESSION_MAX_ENTRIES = Integer.getInteger("concert.authSession.maxEntries", 10000);
+    public static final long AUTH_SESSION_SECONDS = Long.getLong("concert.authSession.seconds", 1800);
+
+    /**
+     * Whether auth tokens are signed tokens carrying the user's identity, which are checked without the database,
+     * rather than random tokens stored with the user. See {@link SignedTokens}.
+     */
+    public static final boolean SIGNED_AUTH_TOKENS = Boolean.getBoolean("concert.auth.signedTokens");
+
+    /**
+     * How long signed auth tokens are valid for, and the base64-encoded secret they are signed with. Service nodes
+     * that share a secret accept each other's tokens.
+     */
+    public static final long SIGNED_AUTH_TOKEN_SECONDS = Long.getLong("concert.auth.tokenSeconds", 3600);
+    public static final String SIGNED_AUTH_TOKEN_SECRET = System.getProperty("concert.auth.secret");
+
+    /**
+     * How many PBKDF2 iterations passwords are hashed with. Passwords hashed with fewer are rehashed on login.
+     */
+    public static final int PASSWORD_HASH_ITERATIONS = Integer.getInteger("concert.password.iterations", 100000);
+
+    /**
+     * How many threads check passwords at login, and how many logins may wait for one before further logins are
+     * turned away with 503.
+     */
+    public static final int LOGIN_THREADS =
+            Integer.getInteger("concert.login.threads", Runtime.getRuntime().availableProcessors());
+    public static final int LOGIN_QUEUE_SIZE = Integer.getInteger("concert.login.queueSize", 100);
+
+    /**
+     * The largest page of concerts, performers or bookings that may be asked for.
+     */
+    public static final int MAX_PAGE_SIZE = Integer.getInteger("concert.paging.maxPageSize", 1000);
+
+    /**
+     * How many rows are fetched from the database at a time when a list that isn't paged is streamed to the client.
+     */
+    public static final int STREAMING_FETCH_SIZE = Integer.getInteger("concert.streaming.fetchSize", 100);
+
+    /**
+     * How many threads send seat updates to clients streaming them, and how often an idle stream is sent a comment so
+     * that streams whose clients have gone away are noticed and closed.
+     */
+    public static final int SEAT_STREAM_THREADS = Integer.getInteger("concert.seatStream.threads", 4);
+    public static final long SEAT_STREAM_HEARTBEAT_SECONDS = Long.getLong("concert.seatStream.heartbeatSeconds", 30);
+
+    private Config() {}
+}
@@ -3,17 +3,20 @@ package se325.assignment01.concert.service.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.PerformerDTO;
-import se325.assignment01.concert.service.domain.Performer;
-import se325.assignment01.concert.service.mapper.PerformerMapper;
+import se325.assignment01.concert.common.types.Genre;
+import se325.assignment01.concert.service.jaxrs.ConditionalResponses;
+import se325.assignment01.concert.service.jaxrs.Page;
+import se325.assignment01.concert.service.util.ConcertCatalogue;
 
-import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/concert-service")
 @Produces(MediaType.APPLICATION_JSON)
@@ -24,43 +27,43 @@ public class PerformerResource {
 
     @GET
     @Path("performers/{id}")
-    public Response getPerformer(@PathParam("id") long id) {
+    public Response getPerformer(@PathParam("id") long id, @Context Request request) {
         LOGGER.info("Retrieving performer with id: " + id);
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
+        // Performers are served from the in-memory catalogue rather than the database
+        ConcertCatalogue.Snapshot catalogue = ConcertCatalogue.instance().snapshot();
+        PerformerDTO performerDTO = catalogue.getPerformer(id);
 
-            // Load Performer with supplied ID
-            Performer performer = em.find(Performer.class, id);
-
-            // Check if Performer could be found
-            if (performer == null) {
-                throw new WebApplicationException(Response.Status.NOT_FOUND);
-            }
-
-            Response.ResponseBuilder rb = Response.ok(PerformerMapper.toDto(performer));
-            return rb.build();
-        } finally {
-            em.close();
+        // Check if Performer could be found
+        if (performerDTO == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+
+        // Clients that already have this version of the catalogue get 304 Not Modified
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, Long.toString(catalogue.getVersion()), () -> performerDTO);
+        return rb.build();
     }
 
     @GET
     @Path("performers")
-    public Response getAllPerformers() {
+    public Response getAllPerformers(@QueryParam("after") Long after, @QueryParam("limit") Integer limit,
+                                     @QueryParam("genre") Genre genre,
+                                     @Context Request request, @Context HttpHeaders headers, @Context UriInfo uriInfo) {
         LOGGER.info("Retrieving all performers");
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-            TypedQuery<Performer> performerTypedQuery = em.createQuery("select p from Performer p", Performer.class);
-            List<Performer> performerList = performerTypedQuery.getResultList();
-            List<PerformerDTO> performerDTOS = performerList.stream().map(PerformerMapper::toDto).collect(Collectors.toList());
-            GenericEntity<List<PerformerDTO>> genericEntity = new GenericEntity<>(performerDTOS) {};
+        ConcertCatalogue.Snapshot catalogue = ConcertCatalogue.instance().snapshot();
+        String version = Long.toString(catalogue.getVersion());
 
-            Response.ResponseBuilder rb = Response.ok(genericEntity);
+        // The catalogue holds the whole list already serialised, so sending it is just copying bytes
+        if (after == null && limit == null && genre == null) {
+            Response.ResponseBuilder rb = ConditionalResponses.ok(request, headers, version, catalogue.getPerformersBody());
             return rb.build();
-        } finally {
-            em.close();
         }
+
+        // Otherwise send one page of the performers, optionally only those of the given genre
+        List<PerformerDTO> performers = catalogue.findPerformers(after == null ? 0 : after, genre, Page.fetchSize(limit));
+        Page<PerformerDTO> page = Page.of(performers, limit, PerformerDTO::getId, uriInfo);
+
+        Response.ResponseBuilder rb = ConditionalResponses.ok(request, version,
+                () -> new GenericEntity<List<PerformerDTO>>(page.getItems()) {});
+        return page.addLinks(rb).build();
     }
 }
@@ -1,8 +1,11 @@
 package se325.assignment01.concert.service.services;
 
+import org.hibernate.Cache;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.util.Map;
 
 /**
  * Singleton class that manages an EntityManagerFactory. When a
@@ -18,11 +21,12 @@ import javax.persistence.Persistence;
  */
 public class PersistenceManager {
     private static PersistenceManager _instance = null;
+    private static Map<String, ?> overrides = Map.of();
 
     private EntityManagerFactory entityManagerFactory;
 
     protected PersistenceManager() {
-        entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert");
+        entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert", overrides);
     }
 
     public EntityManager createEntityManager() {
@@ -38,8 +42,19 @@ public class PersistenceManager {
 
     // FOR TESTING ONLY! Will wipe the database.
     public void reset() {
+        // The second-level cache may outlive the factory, so it mustn't keep entities from the database being wiped
+        entityManagerFactory.getCache().unwrap(Cache.class).evictAllRegions();
         entityManagerFactory.close();
-        entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert");
+        entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert", overrides);
+    }
+
+    // FOR TESTING ONLY! Overrides properties in persistence.xml, e.g. to use an in-memory database rather than the
+    // one in the user's home directory. Must be called before the PersistenceManager is first used.
+    public static synchronized void override(Map<String, ?> properties) {
+        if (_instance != null) {
+            throw new IllegalStateException("The PersistenceManager is already in use");
+        }
+        overrides = properties;
     }
 
 }
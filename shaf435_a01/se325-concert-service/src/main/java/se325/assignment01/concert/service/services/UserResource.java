@@ -1,54 +1,135 @@
 package se325.assignment01.concert.service.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.UserDTO;
 import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.util.AuthSessions;
+import se325.assignment01.concert.service.util.PasswordHasher;
+import se325.assignment01.concert.service.util.SignedTokens;
 
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
-import javax.persistence.TypedQuery;
+import javax.persistence.LockModeType;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Path("/concert-service")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class UserResource {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserResource.class);
+
+    // Checking a password hash is slow, so it is done on a pool of its own rather than on request threads. Logins
+    // queue in arrival order; when the queue is full, further logins are turned away rather than piling up.
+    private static final ExecutorService passwordVerifiers = new ThreadPoolExecutor(
+            Config.LOGIN_THREADS, Config.LOGIN_THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Config.LOGIN_QUEUE_SIZE, true),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-verifier");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Checked against the password given for a username that doesn't exist, so that logging in as an unknown user
+    // takes as long as logging in with the wrong password, and doesn't reveal which usernames exist
+    private static final String UNKNOWN_USER_PASSWORD_HASH = PasswordHasher.hash(UUID.randomUUID().toString());
+
     @POST
     @Path("login")
-    public Response authoriseUser(UserDTO userDTO) {
+    public void authoriseUser(@Suspended AsyncResponse response, UserDTO userDTO) {
+        // Select user with matching username
         EntityManager em = PersistenceManager.instance().createEntityManager();
-
+        List<User> users;
         try {
-            em.getTransaction().begin();
-
-            // Select user with matching username & password
-            TypedQuery<User> typedQuery =
-                    em.createQuery("select u from User u where u.username = :providedUsername AND u.password = :providedPassword", User.class)
+            users = em.createQuery("select u from User u where u.username = :providedUsername", User.class)
                     .setParameter("providedUsername", userDTO.getUsername())
-                    .setParameter("providedPassword", userDTO.getPassword());
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+        // A username that isn't found is still checked on the pool, to be turned away with 401 in the same time
+        User user = users.isEmpty() ? null : users.get(0);
+        try {
+            passwordVerifiers.execute(() -> {
+                try {
+                    response.resume(this.logIn(user, userDTO.getPassword()));
+                } catch (RuntimeException e) {
+                    response.resume(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Too many logins waiting; ask the client to try again shortly
+            LOGGER.warn("authoriseUser(): Login queue is full");
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, 1)
+                    .build());
+        }
+    }
+
+    // Check the user's password, and if it matches, give them an authentication token to mark them as authorised
+    private Response logIn(User user, String password) {
+        if (user == null) {
+            PasswordHasher.matches(password, UNKNOWN_USER_PASSWORD_HASH);
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+        if (!PasswordHasher.matches(password, user.getPassword())) {
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+
+        // Passwords still in plaintext, or hashed with too few iterations, are rehashed while the password is at hand
+        String newPasswordHash = PasswordHasher.needsRehash(user.getPassword()) ? PasswordHasher.hash(password) : null;
+        NewCookie cookie;
+        if (Config.SIGNED_AUTH_TOKENS) {
+            // The token identifies the user itself, so there is nothing to store
+            cookie = new NewCookie("auth", SignedTokens.instance().issue(user.getId(), user.getUsername()));
+        } else {
+            cookie = new NewCookie("auth", UUID.randomUUID().toString());
+        }
+
+        String previousAuthToken = null;
+        if (!Config.SIGNED_AUTH_TOKENS || newPasswordHash != null) {
+            EntityManager em = PersistenceManager.instance().createEntityManager();
             try {
-                User user = typedQuery.getSingleResult();
-                // Create an authentication token for user to mark them as authorised
-                NewCookie cookie = new NewCookie("auth", UUID.randomUUID().toString());
-                user.setAuthToken(cookie.getValue());
-                em.merge(user);
+                em.getTransaction().begin();
+                // Locked so that logins of the same user replace each other's tokens one at a time, each knowing
+                // which token it replaced, rather than the token read before the password was checked
+                User storedUser = em.find(User.class, user.getId(), LockModeType.PESSIMISTIC_WRITE);
+                previousAuthToken = storedUser.getAuthToken();
+                if (!Config.SIGNED_AUTH_TOKENS) {
+                    storedUser.setAuthToken(cookie.getValue());
+                }
+                if (newPasswordHash != null) {
+                    storedUser.setPassword(newPasswordHash);
+                }
                 em.getTransaction().commit();
-
-                // Return 200 response with auth token in cookie header
-                Response.ResponseBuilder rb = Response.ok().cookie(cookie);
-                return rb.build();
-            } catch (NoResultException e) {
-                // No user found with provided username/password
-                throw new WebApplicationException(Response.Status.UNAUTHORIZED);
             } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
                 em.close();
             }
-        } finally {
-            em.close();
         }
+
+        if (!Config.SIGNED_AUTH_TOKENS) {
+            // Remember the user's session, so that their requests can be authenticated without the database
+            AuthSessions.instance().loggedIn(user.getId(), user.getUsername(), cookie.getValue(), previousAuthToken);
+        }
+
+        // Return 200 response with auth token in cookie header
+        Response.ResponseBuilder rb = Response.ok().cookie(cookie);
+        return rb.build();
     }
 }
@@ -0,0 +1,86 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.QueueTicketDTO;
+import se325.assignment01.concert.service.jaxrs.RateLimited;
+import se325.assignment01.concert.service.util.AdmissionControl;
+import se325.assignment01.concert.service.util.AuthSessions;
+import se325.assignment01.concert.service.util.ConcertCatalogue;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+
+@Path("/concert-service")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class WaitingRoomResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WaitingRoomResource.class);
+
+    @POST
+    @Path("waiting-room/{concertId}")
+    @RateLimited
+    public Response joinWaitingRoom(@PathParam("concertId") long concertId, @CookieParam("auth") Cookie authToken,
+                                    @Context UriInfo uriInfo) {
+        LOGGER.info("Joining waiting room for concert " + concertId);
+        // No waiting room when anyone can book at any time
+        if (!AdmissionControl.instance().isEnabled()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+
+        // Only users can queue, so that each has one place in the queue rather than as many as they ask for
+        AuthSessions.Session session = authToken == null ? null : AuthSessions.instance().find(authToken.getValue());
+        if (session == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+
+        if (ConcertCatalogue.instance().snapshot().getConcert(concertId) == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+
+        // Return the ticket, and send it in a cookie so that it accompanies the client's booking and hold requests. The
+        // cookie is for the whole service, as by default it would only be sent back to the waiting room.
+        AdmissionControl.Ticket ticket = AdmissionControl.instance().join(session.getUserId(), concertId);
+        NewCookie cookie = new NewCookie("admission", ticket.getId(), uriInfo.getBaseUri().getPath(), null, null,
+                NewCookie.DEFAULT_MAX_AGE, false);
+        Response.ResponseBuilder rb = Response.created(URI.create("/concert-service/waiting-room/tickets/" + ticket.getId()))
+                .entity(toDTO(ticket))
+                .cookie(cookie);
+        return rb.build();
+    }
+
+    @GET
+    @Path("waiting-room/tickets/{id}")
+    public Response getTicket(@PathParam("id") String id) {
+        // Served entirely from memory, as queued clients poll this while they wait
+        AdmissionControl.Ticket ticket = AdmissionControl.instance().get(id);
+        if (ticket == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        return Response.ok(toDTO(ticket)).build();
+    }
+
+    @DELETE
+    @Path("waiting-room/tickets/{id}")
+    public Response leaveWaitingRoom(@PathParam("id") String id) {
+        LOGGER.info("Leaving waiting room with ticket " + id);
+        AdmissionControl.Ticket ticket = AdmissionControl.instance().get(id);
+        if (ticket == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        AdmissionControl.instance().leave(ticket);
+        return Response.noContent().build();
+    }
+
+    private static QueueTicketDTO toDTO(AdmissionControl.Ticket ticket) {
+        return new QueueTicketDTO(ticket.getId(), ticket.getConcertId(), ticket.isAdmitted(), ticket.getPosition(),
+                ticket.getEstimatedWaitSeconds());
+    }
+}
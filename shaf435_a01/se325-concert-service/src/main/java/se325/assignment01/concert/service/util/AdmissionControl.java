@@ -0,0 +1,237 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.services.Config;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton waiting room for concerts that are in high demand. Users join a concert's queue and are given a
+ * ticket, at most one per concert; tickets are admitted in the order they were issued, while at most {@link Config#ADMISSION_ACTIVE_BOOKERS}
+ * admitted tickets per concert are active at once. A ticket stops being active when its holder books, leaves the
+ * queue, or doesn't book within {@link Config#ADMISSION_SECONDS} of being admitted, at which point the next ticket in
+ * the queue is admitted.
+ * <p>
+ * Everything is kept in memory, so queued clients can check their position and estimated wait without any database
+ * access. A queued ticket that isn't checked for {@link Config#ADMISSION_POLL_SECONDS} is treated as abandoned and
+ * skipped when its turn comes, so that it doesn't hold up the queue.
+ */
+public class AdmissionControl {
+
+    private static AdmissionControl _instance = null;
+
+    // Smoothing factor for the average time an admitted ticket stays active
+    private static final double SESSION_SMOOTHING = 0.2;
+
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final Map<String, Ticket> ticketsByUserAndConcert = new ConcurrentHashMap<>();
+    private final Map<Long, ConcertQueue> queues = new ConcurrentHashMap<>();
+    private final HashedWheelTimer<Ticket> timer = new HashedWheelTimer<>("admission-timer", 100, 512, this::leave);
+
+    protected AdmissionControl() { }
+
+    public static synchronized AdmissionControl instance() {
+        if (_instance == null) {
+            _instance = new AdmissionControl();
+        }
+        return _instance;
+    }
+
+    /**
+     * Returns true if bookings must be made with an admitted ticket.
+     */
+    public boolean isEnabled() {
+        return Config.ADMISSION_ACTIVE_BOOKERS > 0;
+    }
+
+    /**
+     * Issues the given user a ticket at the back of the given concert's queue. The ticket is admitted straight away if
+     * fewer than the allowed number of tickets are active. If the user already has a ticket for the concert, that
+     * ticket is returned instead, keeping its place in the queue.
+     */
+    public Ticket join(long userId, long concertId) {
+        ConcertQueue queue = queues.computeIfAbsent(concertId, id -> new ConcertQueue());
+        synchronized (queue) {
+            Ticket existing = ticketsByUserAndConcert.get(Ticket.key(userId, concertId));
+            if (existing != null) {
+                existing.lastSeenMillis = System.currentTimeMillis();
+                return existing;
+            }
+            Ticket ticket = new Ticket(UUID.randomUUID().toString(), userId, concertId, ++queue.lastIssued, queue);
+            tickets.put(ticket.id, ticket);
+            ticketsByUserAndConcert.put(ticket.key(), ticket);
+            queue.waiting.add(ticket);
+            admitWaiting(queue);
+            return ticket;
+        }
+    }
+
+    /**
+     * Returns the ticket with the given id, or null if there is no such ticket or it is no longer in use. Looking up
+     * a queued ticket keeps its place in the queue.
+     */
+    public Ticket get(String id) {
+        Ticket ticket = tickets.get(id);
+        if (ticket != null) {
+            ticket.lastSeenMillis = System.currentTimeMillis();
+        }
+        return ticket;
+    }
+
+    /**
+     * Gives up the given ticket, admitting the next one in its queue if it was active. Does nothing if the ticket is
+     * no longer in use.
+     */
+    public void leave(Ticket ticket) {
+        release(ticket, false);
+    }
+
+    /**
+     * Gives up the given ticket after its holder has made a booking. The time the ticket was active is used to
+     * estimate how long queued tickets will wait.
+     */
+    public void booked(Ticket ticket) {
+        release(ticket, true);
+    }
+
+    /**
+     * Discards all tickets and queues.
+     */
+    public void clear() {
+        tickets.values().forEach(ticket -> {
+            if (ticket.timeout != null) {
+                ticket.timeout.cancel();
+            }
+        });
+        tickets.clear();
+        ticketsByUserAndConcert.clear();
+        queues.clear();
+    }
+
+    private void release(Ticket ticket, boolean booked) {
+        ConcertQueue queue = ticket.queue;
+        synchronized (queue) {
+            if (!forget(ticket)) {
+                return;
+            }
+            // A queued ticket is left in the waiting queue, and skipped when it reaches the front
+            if (ticket.admittedMillis > 0) {
+                queue.active--;
+                ticket.timeout.cancel();
+                if (booked) {
+                    long sessionMillis = System.currentTimeMillis() - ticket.admittedMillis;
+                    queue.averageSessionMillis += SESSION_SMOOTHING * (sessionMillis - queue.averageSessionMillis);
+                }
+                admitWaiting(queue);
+            }
+        }
+    }
+
+    // Admit tickets from the front of the queue until the active limit is reached. Must hold the queue's lock.
+    private void admitWaiting(ConcertQueue queue) {
+        long now = System.currentTimeMillis();
+        long abandonedBefore = now - Config.ADMISSION_POLL_SECONDS * 1000;
+        while (queue.active < Config.ADMISSION_ACTIVE_BOOKERS) {
+            Ticket next = queue.waiting.poll();
+            if (next == null) {
+                return;
+            }
+            queue.lastAdmitted = next.number;
+            if (!tickets.containsKey(next.id)) {
+                // Left the queue before its turn
+                continue;
+            }
+            if (next.lastSeenMillis < abandonedBefore) {
+                forget(next);
+                continue;
+            }
+            next.admittedMillis = now;
+            next.timeout = timer.schedule(next, Config.ADMISSION_SECONDS * 1000);
+            queue.active++;
+        }
+    }
+
+    // Stop tracking the given ticket, returning false if it was no longer in use. Must hold the queue's lock.
+    private boolean forget(Ticket ticket) {
+        if (!tickets.remove(ticket.id, ticket)) {
+            return false;
+        }
+        ticketsByUserAndConcert.remove(ticket.key(), ticket);
+        return true;
+    }
+
+    private static class ConcertQueue {
+        private final Queue<Ticket> waiting = new ArrayDeque<>();
+        private long lastIssued;
+        private volatile long lastAdmitted;
+        private int active;
+        private volatile double averageSessionMillis = Config.ADMISSION_SECONDS * 1000 / 2.0;
+    }
+
+    public static class Ticket {
+        private final String id;
+        private final long userId;
+        private final long concertId;
+        private final long number;
+        private final ConcertQueue queue;
+        private volatile long lastSeenMillis = System.currentTimeMillis();
+        private volatile long admittedMillis;
+        private HashedWheelTimer.Timeout<Ticket> timeout;
+
+        private Ticket(String id, long userId, long concertId, long number, ConcertQueue queue) {
+            this.id = id;
+            this.userId = userId;
+            this.concertId = concertId;
+            this.number = number;
+            this.queue = queue;
+        }
+
+        private static String key(long userId, long concertId) {
+            return userId + "@" + concertId;
+        }
+
+        private String key() {
+            return key(userId, concertId);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public long getConcertId() {
+            return concertId;
+        }
+
+        public boolean isAdmitted() {
+            return admittedMillis > 0;
+        }
+
+        /**
+         * Returns how many tickets are ahead of this one in the queue, counting this one, or 0 if it is admitted.
+         * Tickets ahead that have been abandoned are still counted.
+         */
+        public long getPosition() {
+            return isAdmitted() ? 0 : Math.max(number - queue.lastAdmitted, 1);
+        }
+
+        /**
+         * Returns roughly how long this ticket will wait to be admitted, assuming each active ticket stays active for
+         * the recent average time before the next one is let in.
+         */
+        public long getEstimatedWaitSeconds() {
+            long position = getPosition();
+            if (position == 0) {
+                return 0;
+            }
+            long turnsToWait = (position + Config.ADMISSION_ACTIVE_BOOKERS - 1) / Config.ADMISSION_ACTIVE_BOOKERS;
+            return Math.round(turnsToWait * queue.averageSessionMillis / 1000);
+        }
+    }
+}
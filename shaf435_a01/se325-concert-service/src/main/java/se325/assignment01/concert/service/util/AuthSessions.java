@@ -0,0 +1,114 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.services.Config;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Singleton cache of the users that auth tokens belong to, so that authenticating a request doesn't need a database
+ * query. Sessions are cached when a user logs in, or when a token that isn't cached is looked up in the database, and
+ * are evicted when the cache is full or they reach {@link Config#AUTH_SESSION_SECONDS} old.
+ * <p>
+ * Logging in replaces a user's auth token, so the old token is removed from the cache and remembered as revoked for
+ * as long as it could still be cached, in case a lookup of the old token read the database just before it changed.
+ * <p>
+ * When {@link Config#SIGNED_AUTH_TOKENS} is set, auth tokens are {@link SignedTokens} that carry the session
+ * themselves, and are verified rather than cached.
+ */
+public class AuthSessions {
+
+    private static AuthSessions _instance = null;
+
+    private final ExpiringCache<String, Session> sessions =
+            new ExpiringCache<>(Config.AUTH_SESSION_MAX_ENTRIES, Config.AUTH_SESSION_SECONDS * 1000);
+    private final ExpiringCache<String, Boolean> revokedTokens =
+            new ExpiringCache<>(Config.AUTH_SESSION_MAX_ENTRIES, Config.AUTH_SESSION_SECONDS * 1000);
+
+    protected AuthSessions() { }
+
+    public static synchronized AuthSessions instance() {
+        if (_instance == null) {
+            _instance = new AuthSessions();
+        }
+        return _instance;
+    }
+
+    /**
+     * Returns the session for the given auth token, or null if no user has that token.
+     */
+    public Session find(String authToken) {
+        if (Config.SIGNED_AUTH_TOKENS) {
+            return SignedTokens.instance().verify(authToken);
+        }
+
+        Session session = sessions.get(authToken);
+        if (session != null) {
+            return session;
+        }
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            List<Object[]> users = em.createQuery("select u.id, u.username from User u where u.authToken = :authToken", Object[].class)
+                    .setParameter("authToken", authToken)
+                    .getResultList();
+            if (users.isEmpty()) {
+                return null;
+            }
+            session = new Session((Long) users.get(0)[0], (String) users.get(0)[1]);
+        } finally {
+            em.close();
+        }
+
+        // Revoking a token marks it revoked before uncaching it, so checking after caching can't miss a revocation
+        sessions.put(authToken, session);
+        if (revokedTokens.get(authToken) != null) {
+            sessions.remove(authToken, session);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Caches the session for a user who has just logged in, and revokes the auth token they had before, if any. The
+     * new token may itself have been revoked already, by a later login of the same user that was cached first.
+     */
+    public void loggedIn(long userId, String username, String authToken, String previousAuthToken) {
+        if (previousAuthToken != null) {
+            revokedTokens.put(previousAuthToken, true);
+            sessions.remove(previousAuthToken);
+        }
+        Session session = new Session(userId, username);
+        sessions.put(authToken, session);
+        if (revokedTokens.get(authToken) != null) {
+            sessions.remove(authToken, session);
+        }
+    }
+
+    /**
+     * Forgets all sessions and revoked tokens, e.g. when the users they belong to may have been deleted.
+     */
+    public void clear() {
+        sessions.clear();
+        revokedTokens.clear();
+    }
+
+    public static class Session {
+        private final long userId;
+        private final String username;
+
+        Session(long userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package se325.assignment01.concert.service.util;
+
+import org.hibernate.Cache;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.graph.GraphSemantic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformerDTO;
+import se325.assignment01.concert.common.types.Genre;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Performer;
+import se325.assignment01.concert.service.mapper.ConcertMapper;
+import se325.assignment01.concert.service.mapper.PerformerMapper;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Singleton, in-memory copy of the concert catalogue - the concerts and performers, which almost never change - so
+ * that they can be served without the database.
+ * <p>
+ * The catalogue is held as an immutable {@link Snapshot}, which {@link #rebuild()} replaces as a whole from the
+ * database. Readers take the current snapshot and use it without locking; a reader that took the previous snapshot
+ * carries on with it undisturbed. Each snapshot also holds its concert and performer lists already serialised as
+ * {@link JsonBody JsonBodies}, so that the lists are serialised once per rebuild rather than once per request.
+ */
+public class ConcertCatalogue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcertCatalogue.class);
+    private static ConcertCatalogue _instance = null;
+
+    private volatile Snapshot snapshot = new Snapshot(0, List.of(), List.of());
+
+    protected ConcertCatalogue() { }
+
+    public static synchronized ConcertCatalogue instance() {
+        if (_instance == null) {
+            _instance = new ConcertCatalogue();
+        }
+        return _instance;
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the snapshot with one built from the current contents of the database.
+     */
+    public synchronized void rebuild() {
+        Snapshot loaded;
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            // Versions carry on from the previous one, and from the clock so that they also differ across restarts
+            loaded = load(em, Math.max(snapshot.version + 1, System.currentTimeMillis()));
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        snapshot = loaded;
+        LOGGER.debug("rebuild(): Loaded " + loaded.concerts.size() + " concerts and " + loaded.performers.size() + " performers");
+    }
+
+    /**
+     * As {@link #rebuild()}, but first empties the second-level cache of concerts and performers, so that changes
+     * made to the database other than through Hibernate are picked up.
+     */
+    public void reload() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getEntityManagerFactory().getCache().unwrap(Cache.class).evictAllRegions();
+        } finally {
+            em.close();
+        }
+        rebuild();
+    }
+
+    /**
+     * Loads a snapshot of the catalogue using the given EntityManager. This takes two queries however many concerts
+     * there are: one for the concerts, which loads their dates and performers with them through the
+     * {@link Concert#FULL} entity graph, and one for the performers. Both queries are cached, so loading the catalogue
+     * again while the concerts and performers are unchanged takes none.
+     */
+    public static Snapshot load(EntityManager em, long version) {
+        // The entities are only read to be copied into DTOs, so Hibernate needn't keep snapshots of them to check
+        // for changes. Distinct removes the repeats of each concert from the joins, but needn't be sent to the database.
+        List<ConcertDTO> concerts = new ArrayList<>();
+        for (Concert concert : em.createQuery("select distinct c from Concert c order by c.id", Concert.class)
+                .setHint(GraphSemantic.FETCH.getJpaHintName(), em.getEntityGraph(Concert.FULL))
+                .setHint(QueryHints.PASS_DISTINCT_THROUGH, false)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList()) {
+            ConcertDTO concertDTO = ConcertMapper.toDTO(concert);
+            concertDTO.setDates(Collections.unmodifiableList(concertDTO.getDates()));
+            concertDTO.setPerformers(Collections.unmodifiableList(concertDTO.getPerformers()));
+            concerts.add(concertDTO);
+        }
+        List<PerformerDTO> performers = new ArrayList<>();
+        for (Performer performer : em.createQuery("select p from Performer p order by p.id", Performer.class)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList()) {
+            performers.add(PerformerMapper.toDto(performer));
+        }
+        return new Snapshot(version, concerts, performers);
+    }
+
+    /**
+     * An immutable view of the catalogue. The DTOs it holds are shared between requests, and must not be modified.
+     */
+    public static class Snapshot {
+        private final long version;
+        private final List<ConcertDTO> concerts;
+        private final List<ConcertSummaryDTO> concertSummaries = new ArrayList<>();
+        private final List<PerformerDTO> performers;
+        private final Map<Long, ConcertDTO> concertsById = new HashMap<>();
+        private final Map<Long, PerformerDTO> performersById = new HashMap<>();
+        private final Map<Genre, List<PerformerDTO>> performersByGenre = new EnumMap<>(Genre.class);
+        private final JsonBody concertsBody;
+        private final JsonBody concertSummariesBody;
+        private final JsonBody performersBody;
+
+        private Snapshot(long version, List<ConcertDTO> concerts, List<PerformerDTO> performers) {
+            this.version = version;
+            this.concerts = Collections.unmodifiableList(concerts);
+            this.performers = Collections.unmodifiableList(performers);
+            for (ConcertDTO concert : concerts) {
+                concertsById.put(concert.getId(), concert);
+                concertSummaries.add(new ConcertSummaryDTO(concert.getId(), concert.getTitle(), concert.getImageName()));
+            }
+            for (PerformerDTO performer : performers) {
+                performersById.put(performer.getId(), performer);
+                if (performer.getGenre() != null) {
+                    performersByGenre.computeIfAbsent(performer.getGenre(), g -> new ArrayList<>()).add(performer);
+                }
+            }
+            concertsBody = JsonBody.of(this.concerts);
+            concertSummariesBody = JsonBody.of(concertSummaries);
+            performersBody = JsonBody.of(this.performers);
+        }
+
+        /**
+         * Returns a number identifying this snapshot. Each rebuild gives a higher version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the concert with the given id, or null if there is none.
+         */
+        public ConcertDTO getConcert(long id) {
+            return concertsById.get(id);
+        }
+
+        public List<ConcertDTO> getConcerts() {
+            return concerts;
+        }
+
+        /**
+         * Returns up to <code>max</code> concerts with an id greater than <code>after</code>, in id order. If a date
+         * range is given, only concerts with a date in the range are returned.
+         *
+         * @param from the start of the date range, or null for no start
+         * @param to   the end of the date range, which is not included in the range, or null for no end
+         */
+        public List<ConcertDTO> findConcerts(long after, LocalDateTime from, LocalDateTime to, int max) {
+            List<ConcertDTO> found = new ArrayList<>();
+            for (int i = indexAfter(concerts, after, ConcertDTO::getId); i < concerts.size() && found.size() < max; i++) {
+                ConcertDTO concert = concerts.get(i);
+                if (from == null && to == null) {
+                    found.add(concert);
+                    continue;
+                }
+                for (LocalDateTime date : concert.getDates()) {
+                    if ((from == null || !date.isBefore(from)) && (to == null || date.isBefore(to))) {
+                        found.add(concert);
+                        break;
+                    }
+                }
+            }
+            return found;
+        }
+
+        public JsonBody getConcertsBody() {
+            return concertsBody;
+        }
+
+        public List<ConcertSummaryDTO> getConcertSummaries() {
+            return Collections.unmodifiableList(concertSummaries);
+        }
+
+        public JsonBody getConcertSummariesBody() {
+            return concertSummariesBody;
+        }
+
+        /**
+         * Returns the performer with the given id, or null if there is none.
+         */
+        public PerformerDTO getPerformer(long id) {
+            return performersById.get(id);
+        }
+
+        public List<PerformerDTO> getPerformers() {
+            return performers;
+        }
+
+        /**
+         * Returns up to <code>max</code> performers with an id greater than <code>after</code>, in id order. If a
+         * genre is given, only performers of that genre are returned.
+         */
+        public List<PerformerDTO> findPerformers(long after, Genre genre, int max) {
+            List<PerformerDTO> candidates = genre == null ? performers : performersByGenre.getOrDefault(genre, List.of());
+            int start = indexAfter(candidates, after, PerformerDTO::getId);
+            return candidates.subList(start, (int) Math.min(candidates.size(), (long) start + max));
+        }
+
+        public JsonBody getPerformersBody() {
+            return performersBody;
+        }
+
+        /**
+         * Returns the position of the first of the given concerts or performers, which are in id order, with an id
+         * greater than <code>after</code>.
+         */
+        private static <T> int indexAfter(List<T> sorted, long after, ToLongFunction<T> idOf) {
+            int low = 0;
+            int high = sorted.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (idOf.applyAsLong(sorted.get(mid)) <= after) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
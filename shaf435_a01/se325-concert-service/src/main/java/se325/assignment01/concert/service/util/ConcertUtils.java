@@ -20,7 +20,10 @@ public class ConcertUtils {
 
     /**
      * This method will clear all seat and booking data from the database. Then, it will create all Seat objects for
-     * all concerts and dates.
+     * all concerts and dates, rebuild the in-memory {@link SeatAvailability} index from them, release any
+     * {@link SeatHolds}, empty the {@link AdmissionControl} waiting rooms and forget the cached {@link AuthSessions}.
+     * The {@link ConcertCatalogue} is also reloaded, as the database may have been recreated, or its concerts and
+     * performers changed other than through Hibernate.
      */
     public static void initConcerts() {
         LOGGER.debug("initConcerts(): Creating the Application");
@@ -60,6 +63,12 @@ public class ConcertUtils {
             }
 
             LOGGER.debug("initConcerts(): Created " + seatCount + " seats!");
+
+            SeatAvailability.instance().rebuild();
+            ConcertCatalogue.instance().reload();
+            SeatHolds.instance().clear();
+            AdmissionControl.instance().clear();
+            AuthSessions.instance().clear();
         } finally {
             em.close();
         }
@@ -0,0 +1,128 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A small thread-safe cache with a maximum size and a time-to-live for each entry. Expired entries are dropped when
+ * they are next looked up. When the cache grows past its size, the expired entries and then roughly the least
+ * recently used are evicted.
+ * <p>
+ * Lookups don't lock anything, as the cache sits on the path of every authenticated request. So the cache only
+ * approximates LRU: each entry's last use is only recorded to within {@link #ACCESS_GRANULARITY_MILLIS}, and the
+ * cache may briefly hold more than its size while other threads add entries during an eviction.
+ */
+public class ExpiringCache<K, V> {
+
+    private static final long ACCESS_GRANULARITY_MILLIS = 1000;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<K, CachedValue<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public ExpiringCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the value cached for the given key, or null if there is none or it has expired.
+     */
+    public V get(K key) {
+        CachedValue<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.expiry < now) {
+            entries.remove(key, entry);
+            return null;
+        }
+        entry.accessed(now);
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, new CachedValue<>(value, System.currentTimeMillis(), ttlMillis));
+        this.evictIfFull();
+    }
+
+    /**
+     * Caches the given value unless a current value is already cached for the key.
+     *
+     * @return the value already cached, or null if the given value was cached
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = System.currentTimeMillis();
+        CachedValue<V> entry = new CachedValue<>(value, now, ttlMillis);
+        CachedValue<V> existing = entries.putIfAbsent(key, entry);
+        // An expired value is replaced, unless another thread has already replaced it
+        while (existing != null && existing.expiry < now && !entries.replace(key, existing, entry)) {
+            existing = entries.putIfAbsent(key, entry);
+        }
+        if (existing != null && existing.expiry >= now) {
+            existing.accessed(now);
+            return existing.value;
+        }
+        this.evictIfFull();
+        return null;
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes the entry for the given key only if it is cached with the given value.
+     */
+    public void remove(K key, V value) {
+        entries.computeIfPresent(key, (k, entry) -> entry.value.equals(value) ? null : entry);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    // One thread at a time scans the cache, evicting entries until it is back under 90% of its size, so that the scan
+    // is shared between the many puts that fill the cache again
+    private void evictIfFull() {
+        if (entries.size() <= maxEntries || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> entry.expiry < now);
+
+            int excess = entries.size() - maxEntries * 9 / 10;
+            if (excess > 0) {
+                long[] accesses = entries.values().stream().mapToLong(entry -> entry.lastAccess).sorted().toArray();
+                long lastEvicted = accesses[Math.min(excess, accesses.length) - 1];
+                entries.values().removeIf(entry -> entry.lastAccess <= lastEvicted);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static class CachedValue<V> {
+        private final V value;
+        private final long expiry;
+        private volatile long lastAccess;
+
+        private CachedValue(V value, long now, long ttlMillis) {
+            this.value = value;
+            this.expiry = now + ttlMillis;
+            this.lastAccess = now;
+        }
+
+        // Only writes the entry when its last use has moved on, so that threads reading a popular entry don't all
+        // write to it
+        private void accessed(long now) {
+            if (now - lastAccess > ACCESS_GRANULARITY_MILLIS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A timer for large numbers of short-lived timeouts, such as seat holds. Timeouts are placed into the buckets of a
+ * circular wheel according to their deadline, and a single background thread advances one bucket per tick, expiring
+ * the timeouts that are due. Scheduling and cancelling are O(1) and never block the ticker thread; a timeout fires
+ * at most one tick after its deadline.
+ *
+ * @param <T> the type of item that is handed to the expiry handler when its timeout fires
+ */
+public class HashedWheelTimer<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickMillis;
+    private final List<Queue<Timeout<T>>> wheel;
+    private final Consumer<T> expiryHandler;
+    private final long startMillis;
+
+    // Timeouts scheduled since the last tick. Only the ticker thread touches the wheel itself.
+    private final Queue<Timeout<T>> scheduled = new ConcurrentLinkedQueue<>();
+    private long currentTick = 0;
+
+    public HashedWheelTimer(String name, long tickMillis, int wheelSize, Consumer<T> expiryHandler) {
+        this.tickMillis = tickMillis;
+        this.expiryHandler = expiryHandler;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        this.startMillis = System.currentTimeMillis();
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules the given item to be passed to the expiry handler after the given delay, unless the returned
+     * timeout is cancelled first.
+     */
+    public Timeout<T> schedule(T item, long delayMillis) {
+        Timeout<T> timeout = new Timeout<>(item, System.currentTimeMillis() + delayMillis);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    private void tick() {
+        // Move newly scheduled timeouts into the bucket for their deadline
+        Timeout<T> timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = Math.max((timeout.deadline - startMillis + tickMillis - 1) / tickMillis, currentTick);
+            timeout.remainingRounds = (deadlineTick - currentTick) / wheel.size();
+            wheel.get((int) (deadlineTick % wheel.size())).add(timeout);
+        }
+
+        // Expire everything in the current bucket that is due this time round the wheel
+        Iterator<Timeout<T>> bucket = wheel.get((int) (currentTick % wheel.size())).iterator();
+        while (bucket.hasNext()) {
+            timeout = bucket.next();
+            if (timeout.cancelled) {
+                bucket.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                bucket.remove();
+                try {
+                    expiryHandler.accept(timeout.item);
+                } catch (RuntimeException e) {
+                    LOGGER.error("tick(): Expiry handler failed", e);
+                }
+            }
+        }
+        currentTick++;
+    }
+
+    public static class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stops this timeout from firing. The timeout is removed from the wheel lazily, the next time its bucket is
+         * visited.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
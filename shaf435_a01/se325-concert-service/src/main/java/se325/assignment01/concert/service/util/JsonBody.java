@@ -0,0 +1,71 @@
+package se325.assignment01.concert.service.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body that has already been serialised to UTF-8 JSON, both as is and gzip-compressed, so that it can be
+ * sent any number of times by copying bytes.
+ * <p>
+ * Values are serialised with a default {@link ObjectMapper}, as the JSON provider does, so the bytes are the same as
+ * the provider would write for the value.
+ */
+public class JsonBody {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final byte[] json;
+    private final byte[] gzip;
+
+    private JsonBody(byte[] json, byte[] gzip) {
+        this.json = json;
+        this.gzip = gzip;
+    }
+
+    public static JsonBody of(Object value) {
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(value);
+
+            // Compressed once and then sent many times, so it is worth compressing as far as possible
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+                out.write(json);
+            }
+            return new JsonBody(json, compressed.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialise " + value.getClass().getName() + " to JSON", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts writing JSON to the given stream, serialised in the same way, for bodies too large to hold in memory that
+     * are written as they are sent instead. Closing the generator leaves the stream open.
+     */
+    public static JsonGenerator generator(OutputStream out) throws IOException {
+        return MAPPER.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Returns the JSON. The array is shared, and must not be modified.
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * Returns the gzip-compressed JSON. The array is shared, and must not be modified.
+     */
+    public byte[] getGzip() {
+        return gzip;
+    }
+}
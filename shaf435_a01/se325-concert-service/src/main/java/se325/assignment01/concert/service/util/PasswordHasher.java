@@ -0,0 +1,101 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.services.Config;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Hashes and checks passwords with PBKDF2-HMAC-SHA256. Hashes are stored as
+ * <code>pbkdf2$&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;</code>, with the salt and hash base64-encoded, so the
+ * iteration count can be raised without invalidating existing hashes.
+ * <p>
+ * Passwords stored before hashing was introduced are in plaintext. They are still accepted, and
+ * {@link #needsRehash(String)} reports them so that they can be replaced with a hash when the user next logs in.
+ * <p>
+ * Hashing is deliberately slow, so it should not be done on request threads.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Returns a salted hash of the given password, in the stored form.
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int iterations = Config.PASSWORD_HASH_ITERATIONS;
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Returns true if the given password matches the given stored hash, or plaintext password. A stored hash that
+     * can't be read matches no password.
+     */
+    public static boolean matches(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] fields = stored.substring(PREFIX.length()).split("\\$");
+        if (fields.length != 3) {
+            return false;
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        try {
+            byte[] expected = decoder.decode(fields[2]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, decoder.decode(fields[1]), Integer.parseInt(fields[0])));
+        } catch (IllegalArgumentException e) {
+            // A bad iteration count, bad base64, or an empty salt
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the given stored password is in plaintext, can't be read, or is hashed with fewer iterations
+     * than are now used.
+     */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        if (end < 0) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(stored.substring(PREFIX.length(), end)) < Config.PASSWORD_HASH_ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot hash password with " + ALGORITHM, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private PasswordHasher() {}
+}
@@ -0,0 +1,83 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate of requests made under each of a number of keys, such as auth tokens or client addresses, with a
+ * token bucket per key. Each bucket allows a burst of requests, then refills at a steady rate.
+ * <p>
+ * A bucket is kept as a single {@link AtomicLong}: the time at which it will next be full. A request is allowed if
+ * that time is no further ahead than the time taken to refill a burst, and is recorded by moving it on by the time
+ * taken to refill one request, with compare-and-set, so checking a bucket never blocks. A bucket whose time has
+ * passed is full and so no different from a new one, which lets such buckets be evicted freely when the number of
+ * keys exceeds its bound.
+ */
+public class RateLimiter {
+
+    private final long nanosPerRequest;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param requestsPerSecond the steady rate at which requests are allowed under each key
+     * @param burst             the number of requests allowed at once under a key that has been idle
+     * @param maxKeys           the number of keys beyond which buckets are evicted
+     */
+    public RateLimiter(int requestsPerSecond, int burst, int maxKeys) {
+        this.nanosPerRequest = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        this.burstNanos = nanosPerRequest * Math.max(burst - 1, 0);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Records a request under the given key if its bucket allows it.
+     *
+     * @return 0 if the request is allowed, otherwise how many nanoseconds until it would be
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            if (buckets.size() > maxKeys) {
+                this.evict(now);
+            }
+        }
+
+        while (true) {
+            long fullAt = bucket.get();
+            long wait = fullAt - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, Math.max(fullAt - now, 0) + now + nanosPerRequest)) {
+                return 0;
+            }
+        }
+    }
+
+    // Remove full buckets. If every bucket is in use, remove arbitrary ones - the clients using them will get a fresh
+    // burst, but the number of keys stays bounded. Only one thread evicts at a time; the others carry on.
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            Iterator<AtomicLong> iterator = buckets.values().iterator();
+            while (buckets.size() > maxKeys && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
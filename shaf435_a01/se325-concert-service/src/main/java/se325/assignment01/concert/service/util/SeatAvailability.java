@@ -0,0 +1,292 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.PriceBandDTO;
+import se325.assignment01.concert.common.dto.SeatDTO;
+import se325.assignment01.concert.common.dto.SeatMapDTO;
+import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton, in-memory index of which seats are booked on each concert date. Each date has a {@link SeatBitmap}
+ * with one bit per seat, keyed by the seat's position in {@link TheatreLayout}.
+ * <p>
+ * The index is built from the SEAT table by {@link #rebuild()} and is kept up to date write-through: callers must
+ * invoke {@link #markBooked(LocalDateTime, Collection)} once a transaction booking seats has committed, and
+ * {@link #markReleased(LocalDateTime, Collection)} once a transaction releasing them has committed. The database
+ * remains the source of truth - a seat is only marked booked here after its booking has committed, so the index can
+ * be used to reject requests for taken seats without querying the database, but not to accept them.
+ * <p>
+ * Seats that are marked booked or released are published to {@link SeatUpdates}, for clients streaming the seats.
+ */
+public class SeatAvailability {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeatAvailability.class);
+    private static SeatAvailability _instance = null;
+
+    private volatile Index index = new Index(0, new ConcurrentHashMap<>());
+
+    protected SeatAvailability() { }
+
+    public static synchronized SeatAvailability instance() {
+        if (_instance == null) {
+            _instance = new SeatAvailability();
+        }
+        return _instance;
+    }
+
+    /**
+     * Replaces the index with one built from the current contents of the SEAT table.
+     */
+    public void rebuild() {
+        Map<LocalDateTime, SeatBitmap> rebuilt = new ConcurrentHashMap<>();
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            List<LocalDateTime> dates = em.createQuery("select distinct s.date from Seat s", LocalDateTime.class)
+                    .getResultList();
+            for (LocalDateTime date : dates) {
+                rebuilt.put(date, new SeatBitmap(TheatreLayout.NUM_SEATS_IN_THEATRE));
+            }
+
+            List<Object[]> bookedSeats = em.createQuery("select s.date, s.label from Seat s where s.isBooked = true", Object[].class)
+                    .getResultList();
+            for (Object[] seat : bookedSeats) {
+                int index = TheatreLayout.indexOf((String) seat[1]);
+                if (index >= 0) {
+                    rebuilt.get((LocalDateTime) seat[0]).set(index);
+                }
+            }
+            em.getTransaction().commit();
+
+            // Generations carry on from the previous one, and from the clock so that they also differ across restarts
+            index = new Index(Math.max(index.generation + 1, System.currentTimeMillis()), rebuilt);
+            LOGGER.debug("rebuild(): Indexed " + dates.size() + " dates with " + bookedSeats.size() + " booked seats");
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Returns a string that changes whenever the booked seats on the given date change, including when the index is
+     * rebuilt. It is read before the seats, so a caller that reads it and then the seats may see seats newer than
+     * the version, but never older.
+     */
+    public String stateVersion(LocalDateTime date) {
+        Index current = index;
+        SeatBitmap bitmap = current.bitmaps.get(date);
+        return current.generation + "-" + (bitmap == null ? 0 : bitmap.version());
+    }
+
+    /**
+     * Returns the total number of seats on the given date, or 0 if there are no seats for that date.
+     */
+    public int numSeats(LocalDateTime date) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        return bitmap == null ? 0 : bitmap.size();
+    }
+
+    /**
+     * Returns the number of booked seats on the given date. This is maintained as seats are booked, so it is
+     * cheap to call on every booking.
+     */
+    public int numBooked(LocalDateTime date) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        return bitmap == null ? 0 : bitmap.cardinality();
+    }
+
+    /**
+     * Returns the positions in {@link TheatreLayout} of the booked seats on the given date.
+     */
+    public BitSet bookedSeats(LocalDateTime date) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        return bitmap == null ? new BitSet() : bitmap.snapshot();
+    }
+
+    /**
+     * Returns true if any of the given seats cannot be booked on the given date, either because they are already
+     * booked or because there is no such seat.
+     */
+    public boolean anyUnavailable(LocalDateTime date, Collection<String> seatLabels) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        if (bitmap == null) {
+            return true;
+        }
+        for (String label : seatLabels) {
+            int index = TheatreLayout.indexOf(label);
+            if (index < 0 || bitmap.get(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the given seats as booked. Must only be called after the booking transaction has committed.
+     */
+    public void markBooked(LocalDateTime date, Collection<String> seatLabels) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        if (bitmap == null) {
+            return;
+        }
+        BitSet changed = new BitSet();
+        for (String label : seatLabels) {
+            int index = TheatreLayout.indexOf(label);
+            if (index >= 0 && bitmap.set(index)) {
+                changed.set(index);
+            }
+        }
+        if (!changed.isEmpty()) {
+            SeatUpdates.instance().seatsBooked(date, changed);
+        }
+    }
+
+    /**
+     * Marks the given seats as no longer booked. Must only be called after the transaction releasing them has
+     * committed.
+     */
+    public void markReleased(LocalDateTime date, Collection<String> seatLabels) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        if (bitmap == null) {
+            return;
+        }
+        BitSet changed = new BitSet();
+        for (String label : seatLabels) {
+            int index = TheatreLayout.indexOf(label);
+            if (index >= 0 && bitmap.clear(index)) {
+                changed.set(index);
+            }
+        }
+        if (!changed.isEmpty()) {
+            SeatUpdates.instance().seatsReleased(date, changed);
+        }
+    }
+
+    /**
+     * Finds the best run of adjacent free seats on the given date; see
+     * {@link #findAdjacentSeats(BitSet, int, int, int)}.
+     *
+     * @param excluded seat positions to treat as unavailable even if they aren't booked, e.g. held seats
+     * @return the labels of the chosen seats, or null if no row has enough adjacent free seats, or there are no
+     * seats on the date
+     */
+    public List<String> findAdjacentSeats(LocalDateTime date, int numSeats, int fromRow, int toRow, BitSet excluded) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        if (bitmap == null) {
+            return null;
+        }
+        BitSet taken = bitmap.snapshot();
+        taken.or(excluded);
+        return findAdjacentSeats(taken, numSeats, fromRow, toRow);
+    }
+
+    /**
+     * Finds the best run of adjacent seats that aren't taken in a single row, searching the given rows from the
+     * front. Within a row, the run closest to the centre of the row is chosen.
+     * <p>
+     * Each row's free runs are found by skipping between taken and free seats in the bitmap a word at a time, so the
+     * search is proportional to the number of rows rather than the number of seats.
+     *
+     * @param taken    the positions in {@link TheatreLayout} of the seats that are taken
+     * @param numSeats the number of adjacent seats wanted
+     * @param fromRow  the first row to search, counting from 0 for row A
+     * @param toRow    the row after the last row to search
+     * @return the labels of the chosen seats, or null if no row has enough adjacent free seats
+     */
+    public static List<String> findAdjacentSeats(BitSet taken, int numSeats, int fromRow, int toRow) {
+        int rowLength = TheatreLayout.NUM_SEATS_PER_ROW;
+        for (int row = fromRow; row < toRow; row++) {
+            int rowStart = row * rowLength;
+            int rowEnd = rowStart + rowLength;
+            int centredStart = rowStart + (rowLength - numSeats) / 2;
+
+            int bestStart = -1;
+            int runStart = taken.nextClearBit(rowStart);
+            while (runStart + numSeats <= rowEnd) {
+                int runEnd = taken.nextSetBit(runStart);
+                if (runEnd < 0 || runEnd > rowEnd) {
+                    runEnd = rowEnd;
+                }
+                if (runEnd - runStart >= numSeats) {
+                    // Slide the seats as close to the centre as this run allows
+                    int start = Math.max(runStart, Math.min(centredStart, runEnd - numSeats));
+                    if (bestStart < 0 || Math.abs(start - centredStart) < Math.abs(bestStart - centredStart)) {
+                        bestStart = start;
+                    }
+                }
+                runStart = taken.nextClearBit(runEnd);
+            }
+
+            if (bestStart >= 0) {
+                List<String> seatLabels = new ArrayList<>();
+                for (int i = bestStart; i < bestStart + numSeats; i++) {
+                    seatLabels.add(TheatreLayout.labelAt(i));
+                }
+                return seatLabels;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the seats on the given date with the given booking status, in layout order.
+     */
+    public List<SeatDTO> getSeats(LocalDateTime date, BookingStatus status) {
+        List<SeatDTO> seats = new ArrayList<>();
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        if (bitmap == null) {
+            return seats;
+        }
+        BitSet bookedSeats = bitmap.snapshot();
+        for (int i = 0; i < bitmap.size(); i++) {
+            boolean booked = bookedSeats.get(i);
+            if (status == BookingStatus.Any || booked == (status == BookingStatus.Booked)) {
+                seats.add(new SeatDTO(TheatreLayout.labelAt(i), TheatreLayout.priceAt(i)));
+            }
+        }
+        return seats;
+    }
+
+    /**
+     * Returns a seat map of the booked seats on the given date, or null if there are no seats on that date. This is
+     * the bitmap itself, base64-encoded, so it takes no per-seat work to build.
+     */
+    public SeatMapDTO getSeatMap(LocalDateTime date) {
+        SeatBitmap bitmap = index.bitmaps.get(date);
+        if (bitmap == null) {
+            return null;
+        }
+        // Sized for every seat, as toByteArray() leaves off the bytes after the last booked seat
+        byte[] booked = Arrays.copyOf(bitmap.snapshot().toByteArray(), (bitmap.size() + 7) / 8);
+
+        List<PriceBandDTO> priceBands = new ArrayList<>();
+        for (TheatreLayout.PriceBand band : TheatreLayout.PRICE_BANDS) {
+            priceBands.add(new PriceBandDTO(band.name, band.price, band.numRows));
+        }
+        return new SeatMapDTO(TheatreLayout.LAYOUT_VERSION, TheatreLayout.NUM_ROWS, TheatreLayout.NUM_SEATS_PER_ROW,
+                priceBands, Base64.getEncoder().encodeToString(booked));
+    }
+
+    private static class Index {
+        private final long generation;
+        private final Map<LocalDateTime, SeatBitmap> bitmaps;
+
+        private Index(long generation, Map<LocalDateTime, SeatBitmap> bitmaps) {
+            this.generation = generation;
+            this.bitmaps = bitmaps;
+        }
+    }
+}
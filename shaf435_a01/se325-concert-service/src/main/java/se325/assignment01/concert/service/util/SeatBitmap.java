@@ -0,0 +1,103 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe bitmap with one bit per seat position in {@link TheatreLayout}. A set bit means the seat
+ * at that position is booked.
+ * <p>
+ * Bits are updated with compare-and-set on 64-bit words, so concurrent updates for the same date never block each
+ * other and never lose an update. The number of set bits is maintained alongside the bits, so it can be read in
+ * constant time, as is a version number that counts the changes made.
+ */
+public class SeatBitmap {
+
+    private final int size;
+    private final AtomicLongArray words;
+    private final AtomicInteger cardinality = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+
+    public SeatBitmap(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of set bits.
+     */
+    public int cardinality() {
+        return cardinality.get();
+    }
+
+    /**
+     * Returns the number of times a bit has been set or cleared. It is advanced after the bit changes, so a version
+     * read before the bits is never newer than them.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public boolean get(int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bit at the given position.
+     *
+     * @return true if the bit was previously clear, i.e. this call changed the bitmap
+     */
+    public boolean set(int index) {
+        int wordIndex = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long word = words.get(wordIndex);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(wordIndex, word, word | mask)) {
+                cardinality.incrementAndGet();
+                version.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Clears the bit at the given position.
+     *
+     * @return true if the bit was previously set, i.e. this call changed the bitmap
+     */
+    public boolean clear(int index) {
+        int wordIndex = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long word = words.get(wordIndex);
+            if ((word & mask) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(wordIndex, word, word & ~mask)) {
+                cardinality.decrementAndGet();
+                version.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a point-in-time copy of this bitmap. Each 64-bit word is read atomically.
+     */
+    public BitSet snapshot() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return BitSet.valueOf(copy);
+    }
+}
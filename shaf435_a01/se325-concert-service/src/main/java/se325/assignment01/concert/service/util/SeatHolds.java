@@ -0,0 +1,208 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.services.Config;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton registry of seats temporarily held for users while they complete a booking. Held seats are tracked in a
+ * {@link SeatBitmap} per date, alongside the booked seats in {@link SeatAvailability}, and holds are expired by a
+ * {@link HashedWheelTimer}.
+ * <p>
+ * Each user has at most one hold per date; placing a new hold replaces the previous one, so seats can be added to or
+ * removed from a hold by placing it again. The replacement expires when the original hold would have, so that placing
+ * a hold again and again can't keep seats held indefinitely. Holds only live in memory - the database is still the source of truth for
+ * bookings, so a hold makes it very likely, but does not guarantee, that its seats can be booked.
+ */
+public class SeatHolds {
+
+    private static SeatHolds _instance = null;
+
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final Map<String, Hold> holdsByUserAndDate = new ConcurrentHashMap<>();
+    private final Map<LocalDateTime, SeatBitmap> heldSeats = new ConcurrentHashMap<>();
+    private final HashedWheelTimer<Hold> timer = new HashedWheelTimer<>("seat-hold-timer", 100, 512, this::release);
+
+    protected SeatHolds() { }
+
+    public static synchronized SeatHolds instance() {
+        if (_instance == null) {
+            _instance = new SeatHolds();
+        }
+        return _instance;
+    }
+
+    /**
+     * Holds the given seats for the given user, replacing any hold they already have on that date. A replacement
+     * keeps the expiry of the hold it replaces.
+     *
+     * @return the new hold, or null if any of the seats does not exist, is booked, or is held by another user. In
+     * that case the user's existing hold is left in place.
+     */
+    public Hold place(long userId, LocalDateTime date, List<String> seatLabels) {
+        if (seatLabels.isEmpty() || SeatAvailability.instance().anyUnavailable(date, seatLabels)) {
+            return null;
+        }
+        int[] indices = seatLabels.stream().mapToInt(TheatreLayout::indexOf).toArray();
+
+        SeatBitmap held = heldSeats.computeIfAbsent(date, d -> new SeatBitmap(TheatreLayout.NUM_SEATS_IN_THEATRE));
+        synchronized (held) {
+            Hold previous = holdsByUserAndDate.get(Hold.key(userId, date));
+            for (int index : indices) {
+                if (held.get(index) && (previous == null || !previous.holds(index))) {
+                    return null;
+                }
+            }
+            Instant now = Instant.now();
+            Instant expiry = now.plusSeconds(Config.SEAT_HOLD_SECONDS);
+            if (previous != null) {
+                if (previous.expiry.isAfter(now)) {
+                    expiry = previous.expiry;
+                }
+                releaseLocked(previous, held);
+            }
+
+            Hold hold = new Hold(UUID.randomUUID().toString(), userId, date, new ArrayList<>(seatLabels), indices, expiry);
+            for (int index : indices) {
+                held.set(index);
+            }
+            holds.put(hold.id, hold);
+            holdsByUserAndDate.put(hold.key(), hold);
+            hold.timeout = timer.schedule(hold, expiry.toEpochMilli() - now.toEpochMilli());
+            return hold;
+        }
+    }
+
+    /**
+     * Returns the hold with the given id, or null if there is no such hold or it has expired.
+     */
+    public Hold get(String id) {
+        Hold hold = holds.get(id);
+        if (hold == null || hold.expiry.isBefore(Instant.now())) {
+            return null;
+        }
+        return hold;
+    }
+
+    /**
+     * Returns true if any of the given seats is held by a user other than the given one.
+     */
+    public boolean anyHeldByOthers(long userId, LocalDateTime date, Collection<String> seatLabels) {
+        SeatBitmap held = heldSeats.get(date);
+        if (held == null) {
+            return false;
+        }
+        Hold own = holdsByUserAndDate.get(Hold.key(userId, date));
+        for (String label : seatLabels) {
+            int index = TheatreLayout.indexOf(label);
+            if (index >= 0 && held.get(index) && (own == null || !own.holds(index))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the positions of the seats currently held on the given date.
+     */
+    public BitSet heldSeats(LocalDateTime date) {
+        SeatBitmap held = heldSeats.get(date);
+        return held == null ? new BitSet() : held.snapshot();
+    }
+
+    /**
+     * Releases the given hold's seats. Does nothing if the hold has already been released or has expired.
+     */
+    public void release(Hold hold) {
+        SeatBitmap held = heldSeats.get(hold.date);
+        if (held == null) {
+            return;
+        }
+        synchronized (held) {
+            releaseLocked(hold, held);
+        }
+    }
+
+    /**
+     * Releases all holds.
+     */
+    public void clear() {
+        holds.values().forEach(this::release);
+    }
+
+    private void releaseLocked(Hold hold, SeatBitmap held) {
+        if (!holds.remove(hold.id, hold)) {
+            return;
+        }
+        for (int index : hold.indices) {
+            held.clear(index);
+        }
+        holdsByUserAndDate.remove(hold.key(), hold);
+        hold.timeout.cancel();
+    }
+
+    public static class Hold {
+        private final String id;
+        private final long userId;
+        private final LocalDateTime date;
+        private final List<String> seatLabels;
+        private final int[] indices;
+        private final Instant expiry;
+        private HashedWheelTimer.Timeout<Hold> timeout;
+
+        private Hold(String id, long userId, LocalDateTime date, List<String> seatLabels, int[] indices, Instant expiry) {
+            this.id = id;
+            this.userId = userId;
+            this.date = date;
+            this.seatLabels = seatLabels;
+            this.indices = indices;
+            this.expiry = expiry;
+        }
+
+        private static String key(long userId, LocalDateTime date) {
+            return userId + "@" + date;
+        }
+
+        private String key() {
+            return key(userId, date);
+        }
+
+        private boolean holds(int index) {
+            for (int i : indices) {
+                if (i == index) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public LocalDateTime getDate() {
+            return date;
+        }
+
+        public List<String> getSeatLabels() {
+            return seatLabels;
+        }
+
+        public LocalDateTime getExpiry() {
+            return LocalDateTime.ofInstant(expiry, ZoneId.systemDefault());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.SeatUpdateDTO;
+import se325.assignment01.concert.service.services.Config;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton registry of clients streaming changes to the booked seats on a concert date, as server-sent events.
+ * {@link SeatAvailability} publishes each change here once it has marked the seats, and the change is only passed to
+ * the streams for its date.
+ * <p>
+ * Each stream sends one event at a time. Changes published while an event is being sent aren't queued but combined
+ * into the stream's next event, keeping only the latest state of each seat - so a slow client costs at most a bit per
+ * seat in pending changes however many bookings are made, and is sent the seats' current state once it catches up.
+ */
+public class SeatUpdates {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeatUpdates.class);
+    private static SeatUpdates _instance = null;
+
+    private final Map<LocalDateTime, Set<Stream>> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sender = Executors.newScheduledThreadPool(Config.SEAT_STREAM_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "seat-updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    protected SeatUpdates() {
+        sender.scheduleWithFixedDelay(this::heartbeat, Config.SEAT_STREAM_HEARTBEAT_SECONDS,
+                Config.SEAT_STREAM_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static synchronized SeatUpdates instance() {
+        if (_instance == null) {
+            _instance = new SeatUpdates();
+        }
+        return _instance;
+    }
+
+    /**
+     * Starts streaming changes to the booked seats on the given date to the given sink, until the client goes away.
+     * The first event holds every seat, booked or released, so that a client that has already shown the seats catches
+     * up on any changes made since; later events only hold the seats that have changed.
+     */
+    public void subscribe(LocalDateTime date, SseEventSink sink, Sse sse) {
+        Stream stream = new Stream(date, sink, sse);
+        synchronized (stream) {
+            // The seats are read after the stream is registered, and while holding its lock, so that every change is
+            // either in the seats read or published to the stream afterwards
+            streams.compute(date, (d, dateStreams) -> {
+                Set<Stream> added = dateStreams == null ? ConcurrentHashMap.newKeySet() : dateStreams;
+                added.add(stream);
+                return added;
+            });
+            BitSet booked = SeatAvailability.instance().bookedSeats(date);
+            BitSet released = new BitSet();
+            released.set(0, SeatAvailability.instance().numSeats(date));
+            released.andNot(booked);
+            stream.changed(booked, released);
+        }
+        LOGGER.debug("subscribe(): Streaming seats for " + date);
+    }
+
+    /**
+     * Publishes that the seats at the given positions in {@link TheatreLayout} have been booked on the given date.
+     */
+    public void seatsBooked(LocalDateTime date, BitSet booked) {
+        publish(date, booked, new BitSet());
+    }
+
+    /**
+     * Publishes that the seats at the given positions in {@link TheatreLayout} have been released on the given date.
+     */
+    public void seatsReleased(LocalDateTime date, BitSet released) {
+        publish(date, new BitSet(), released);
+    }
+
+    private void publish(LocalDateTime date, BitSet booked, BitSet released) {
+        Set<Stream> dateStreams = streams.get(date);
+        if (dateStreams == null) {
+            return;
+        }
+        for (Stream stream : dateStreams) {
+            stream.changed(booked, released);
+        }
+    }
+
+    /**
+     * Sends a comment to each stream that isn't sending an event, so that streams whose clients have gone away fail
+     * and are closed, even on dates where no seats are changing.
+     */
+    private void heartbeat() {
+        for (Set<Stream> dateStreams : streams.values()) {
+            for (Stream stream : dateStreams) {
+                stream.heartbeat();
+            }
+        }
+    }
+
+    private void remove(Stream stream) {
+        streams.computeIfPresent(stream.date, (date, dateStreams) -> {
+            dateStreams.remove(stream);
+            return dateStreams.isEmpty() ? null : dateStreams;
+        });
+    }
+
+    private static List<String> labels(BitSet seats) {
+        List<String> labels = new ArrayList<>(seats.cardinality());
+        for (int i = seats.nextSetBit(0); i >= 0; i = seats.nextSetBit(i + 1)) {
+            labels.add(TheatreLayout.labelAt(i));
+        }
+        return labels;
+    }
+
+    private class Stream {
+        private final LocalDateTime date;
+        private final SseEventSink sink;
+        private final Sse sse;
+
+        // Guarded by this: the changes not yet sent, and whether an event is being sent
+        private final BitSet booked = new BitSet();
+        private final BitSet released = new BitSet();
+        private boolean sending = false;
+
+        private Stream(LocalDateTime date, SseEventSink sink, Sse sse) {
+            this.date = date;
+            this.sink = sink;
+            this.sse = sse;
+        }
+
+        private synchronized void changed(BitSet nowBooked, BitSet nowReleased) {
+            released.andNot(nowBooked);
+            booked.or(nowBooked);
+            booked.andNot(nowReleased);
+            released.or(nowReleased);
+            if (!sending) {
+                sending = true;
+                sender.execute(this::sendChanges);
+            }
+        }
+
+        private void heartbeat() {
+            synchronized (this) {
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            send(sse.newEventBuilder().comment("").build());
+        }
+
+        private void sendChanges() {
+            OutboundSseEvent event;
+            synchronized (this) {
+                if (booked.isEmpty() && released.isEmpty()) {
+                    sending = false;
+                    return;
+                }
+                event = sse.newEventBuilder()
+                        .name("seats")
+                        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                        .data(SeatUpdateDTO.class, new SeatUpdateDTO(labels(booked), labels(released)))
+                        .build();
+                booked.clear();
+                released.clear();
+            }
+            send(event);
+        }
+
+        // Once an event has been sent, sends any changes published meanwhile. A stream that fails is left marked as
+        // sending, so nothing more is sent to it.
+        private void send(OutboundSseEvent event) {
+            try {
+                if (sink.isClosed()) {
+                    close();
+                    return;
+                }
+                sink.send(event).whenComplete((result, error) -> {
+                    if (error == null) {
+                        sender.execute(this::sendChanges);
+                    } else {
+                        close();
+                    }
+                });
+            } catch (RuntimeException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            remove(this);
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                // The client has already gone
+            }
+            LOGGER.debug("close(): Stopped streaming seats for " + date);
+        }
+    }
+}
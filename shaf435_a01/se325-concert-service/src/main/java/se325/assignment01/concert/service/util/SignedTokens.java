@@ -0,0 +1,102 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.services.Config;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Singleton that issues and verifies signed auth tokens. A token carries a user's id, username and expiry time,
+ * signed with HMAC-SHA256, so it can be verified without looking anything up: any service node that has the same
+ * secret ({@link Config#SIGNED_AUTH_TOKEN_SECRET}) can verify it. If no secret is configured, a random one is made at
+ * startup, and tokens stop being valid when the service restarts.
+ * <p>
+ * Tokens can't be revoked; a token stays valid until it expires even if the user logs in again.
+ */
+public class SignedTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static SignedTokens _instance = null;
+
+    private final SecretKeySpec key;
+    // Mac instances aren't thread-safe, but are costly to create
+    private final ThreadLocal<Mac> macs;
+
+    protected SignedTokens() {
+        byte[] secret;
+        if (Config.SIGNED_AUTH_TOKEN_SECRET != null) {
+            secret = Base64.getDecoder().decode(Config.SIGNED_AUTH_TOKEN_SECRET);
+        } else {
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        }
+        key = new SecretKeySpec(secret, ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot create " + ALGORITHM + " signer", e);
+            }
+        });
+    }
+
+    public static synchronized SignedTokens instance() {
+        if (_instance == null) {
+            _instance = new SignedTokens();
+        }
+        return _instance;
+    }
+
+    /**
+     * Issues a token for the given user that expires {@link Config#SIGNED_AUTH_TOKEN_SECONDS} from now.
+     */
+    public String issue(long userId, String username) {
+        long expiry = Instant.now().getEpochSecond() + Config.SIGNED_AUTH_TOKEN_SECONDS;
+        String payload = encode((userId + ":" + expiry + ":" + username).getBytes(StandardCharsets.UTF_8));
+        return payload + "." + encode(sign(payload));
+    }
+
+    /**
+     * Returns the session carried by the given token, or null if the token is malformed, its signature doesn't
+     * match, or it has expired.
+     */
+    public AuthSessions.Session verify(String token) {
+        int separator = token.lastIndexOf('.');
+        if (separator < 0) {
+            return null;
+        }
+        String payload = token.substring(0, separator);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+
+            String[] fields = new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8).split(":", 3);
+            if (Long.parseLong(fields[1]) < Instant.now().getEpochSecond()) {
+                return null;
+            }
+            return new AuthSessions.Session(Long.parseLong(fields[0]), fields[2]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            // Not base64, or not a payload this class made
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -13,6 +13,12 @@ import java.util.Set;
 public class TheatreLayout {
 
     // Data here should match up with that in seat-data-module.js. Ideally we wouldn't be hardcoding this...
+
+    /**
+     * Identifies this layout to clients that refer to seats by position, e.g. through a seat map. Must be increased
+     * whenever the rows, seats per row or price bands change.
+     */
+    public static final int LAYOUT_VERSION = 1;
     public static final int NUM_SEATS_PER_ROW = 12;
     public static final int NUM_ROWS = 10;
     public static final int NUM_SEATS_IN_THEATRE = NUM_SEATS_PER_ROW * NUM_ROWS;
@@ -62,6 +68,87 @@ public class TheatreLayout {
 
     }
 
+    /**
+     * Returns the position of the seat with the given label in this layout, counting row by row from seat A1 at
+     * position 0. Positions are stable for a given layout, so they can be used to index per-seat state.
+     *
+     * @param label the seat label, e.g. "C7"
+     * @return the seat's position, or -1 if the label does not name a seat in this layout
+     */
+    public static int indexOf(String label) {
+        if (label == null || label.length() < 2) {
+            return -1;
+        }
+        int rowNum = label.charAt(0) - 'A';
+        if (rowNum < 0 || rowNum >= NUM_ROWS) {
+            return -1;
+        }
+        // Seat numbers are written without leading zeros, so "A01" is not the same seat as "A1"
+        if (label.charAt(1) == '0') {
+            return -1;
+        }
+        int seatNum = 0;
+        for (int i = 1; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < '0' || c > '9' || seatNum > NUM_SEATS_PER_ROW) {
+                return -1;
+            }
+            seatNum = seatNum * 10 + (c - '0');
+        }
+        if (seatNum > NUM_SEATS_PER_ROW) {
+            return -1;
+        }
+        return rowNum * NUM_SEATS_PER_ROW + (seatNum - 1);
+    }
+
+    /**
+     * Returns the label of the seat at the given position. This is the inverse of {@link #indexOf(String)}.
+     */
+    public static String labelAt(int index) {
+        char rowLabel = (char) ('A' + index / NUM_SEATS_PER_ROW);
+        return "" + rowLabel + (index % NUM_SEATS_PER_ROW + 1);
+    }
+
+    /**
+     * Returns the price of the seat at the given position.
+     */
+    public static BigDecimal priceAt(int index) {
+        int rowNum = index / NUM_SEATS_PER_ROW;
+        for (PriceBand band : PRICE_BANDS) {
+            if (rowNum < band.numRows) {
+                return band.price;
+            }
+            rowNum -= band.numRows;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the price band with the given name, or null if there is none.
+     */
+    public static PriceBand priceBandNamed(String name) {
+        for (PriceBand band : PRICE_BANDS) {
+            if (band.name.equals(name)) {
+                return band;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of the first row in the given price band, counting from 0 for row A.
+     */
+    public static int firstRowOf(PriceBand priceBand) {
+        int rowNum = 0;
+        for (PriceBand band : PRICE_BANDS) {
+            if (band == priceBand) {
+                break;
+            }
+            rowNum += band.numRows;
+        }
+        return rowNum;
+    }
+
     public static class PriceBand {
         public String name;
         public BigDecimal price;
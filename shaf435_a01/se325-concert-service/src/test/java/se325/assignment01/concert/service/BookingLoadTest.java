@@ -0,0 +1,170 @@
+package se325.assignment01.concert.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.*;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.booking.BookingCommand;
+import se325.assignment01.concert.service.booking.BookingEngine;
+import se325.assignment01.concert.service.booking.GroupCommitBookingEngine;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.BookingResource;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.SeatAvailability;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Cookie;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers concert dates with concurrent single-seat bookings, once through the booking resource in its default direct
+ * mode, where each request writes its own booking in a transaction of its own, and once through a
+ * {@link GroupCommitBookingEngine}. The engine is called directly, as the booking resource's engine is fixed when the
+ * service starts. Every seat is asked for twice, so half of the bookings must be turned away. Each run checks that
+ * every seat is booked exactly once, and counts the transactions committed with Hibernate's statistics; the
+ * group-commit run must book the same seats in far fewer transactions.
+ * <p>
+ * The bookings are written through the service's own {@link PersistenceManager}, pointed at an in-memory database.
+ * Both runs use fewer threads than Hibernate's connection pool has connections, as the direct mode fails bookings
+ * once the pool runs out.
+ */
+public class BookingLoadTest {
+
+    private static final int NUM_DATES = 10;
+    private static final int NUM_THREADS = 16;
+    private static final String AUTH_TOKEN = "booking-load";
+
+    private static Statistics statistics;
+    private static long concertId;
+    private static long userId;
+    private static List<LocalDateTime> dates = new ArrayList<>();
+
+    @BeforeClass
+    public static void createDatabase() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:booking-load;DB_CLOSE_DELAY=-1;mv_store=false");
+        properties.put("javax.persistence.sql-load-script-source", "");
+        PersistenceManager.override(properties);
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < 2 * NUM_DATES; i++) {
+                LocalDateTime date = LocalDateTime.of(2030, 1, 1, 20, 0).plusDays(i);
+                dates.add(date);
+                for (Seat seat : TheatreLayout.createSeatsFor(date)) {
+                    em.persist(seat);
+                }
+            }
+            Concert concert = new Concert();
+            concert.setTitle("Concert");
+            concert.setDates(new HashSet<>(dates));
+            em.persist(concert);
+            User user = new User();
+            user.setUsername("user");
+            user.setPassword("pa55word");
+            user.setAuthToken(AUTH_TOKEN);
+            em.persist(user);
+            em.getTransaction().commit();
+            concertId = concert.getId();
+            userId = user.getId();
+
+            statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+        } finally {
+            em.close();
+        }
+        SeatAvailability.instance().rebuild();
+    }
+
+    @Test
+    public void testGroupCommitBooksInFewerTransactions() throws Exception {
+        BookingResource resource = new BookingResource();
+        Cookie authToken = new Cookie("auth", AUTH_TOKEN);
+        long directTransactions = hammer(dates.subList(0, NUM_DATES), (date, label) ->
+                resource.makeBooking(new BookingRequestDTO(concertId, date, List.of(label)), authToken, null, null));
+
+        BookingEngine engine = new GroupCommitBookingEngine();
+        long groupCommitTransactions = hammer(dates.subList(NUM_DATES, 2 * NUM_DATES), (date, label) ->
+                engine.book(new BookingCommand(userId, concertId, date, List.of(label))));
+
+        assertTrue(groupCommitTransactions * 4 < directTransactions);
+    }
+
+    // Asks for every seat on the given dates twice, from many threads at once, and checks that each seat was booked
+    // exactly once. Returns how many transactions were committed.
+    private long hammer(List<LocalDateTime> hammeredDates, Booker booker) throws Exception {
+        List<Runnable> bookings = new ArrayList<>();
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        for (int round = 0; round < 2; round++) {
+            for (LocalDateTime date : hammeredDates) {
+                for (int i = 0; i < TheatreLayout.NUM_SEATS_IN_THEATRE; i++) {
+                    String label = TheatreLayout.labelAt(i);
+                    bookings.add(() -> {
+                        try {
+                            booker.book(date, label);
+                            booked.incrementAndGet();
+                        } catch (WebApplicationException e) {
+                            // Taken seats are turned away with 403, or with 409 if another booking claimed them first
+                            int status = e.getResponse().getStatus();
+                            assertTrue("Unexpected status " + status, status == 403 || status == 409);
+                            rejected.incrementAndGet();
+                        }
+                    });
+                }
+            }
+        }
+        Collections.shuffle(bookings, new Random(1));
+
+        Queue<Runnable> queue = new ConcurrentLinkedQueue<>(bookings);
+        ExecutorService threads = Executors.newFixedThreadPool(NUM_THREADS);
+        statistics.clear();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            workers.add(threads.submit(() -> {
+                Runnable booking;
+                while ((booking = queue.poll()) != null) {
+                    booking.run();
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long transactions = statistics.getSuccessfulTransactionCount();
+        threads.shutdown();
+
+        int numSeats = hammeredDates.size() * TheatreLayout.NUM_SEATS_IN_THEATRE;
+        assertEquals(numSeats, booked.get());
+        assertEquals(numSeats, rejected.get());
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            assertEquals((long) numSeats, em.createQuery("select count(s) from Seat s where s.date in :dates and s.isBooked = true", Long.class)
+                    .setParameter("dates", hammeredDates)
+                    .getSingleResult().longValue());
+            assertEquals((long) numSeats, em.createQuery("select count(distinct s) from Booking b join b.seats s where b.date in :dates", Long.class)
+                    .setParameter("dates", hammeredDates)
+                    .getSingleResult().longValue());
+        } finally {
+            em.close();
+        }
+        for (LocalDateTime date : hammeredDates) {
+            assertEquals(TheatreLayout.NUM_SEATS_IN_THEATRE, SeatAvailability.instance().numBooked(date));
+        }
+        return transactions;
+    }
+
+    private interface Booker {
+        void book(LocalDateTime date, String label);
+    }
+}
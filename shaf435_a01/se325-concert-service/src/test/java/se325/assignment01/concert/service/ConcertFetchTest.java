@@ -0,0 +1,147 @@
+package se325.assignment01.concert.service;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.stat.Statistics;
+import org.junit.*;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.types.Genre;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Performer;
+import se325.assignment01.concert.service.util.ConcertCatalogue;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how many SQL statements it takes to load concerts with their dates and performers, so that a change that
+ * brings back a query per concert, or per collection, is caught - and that loading them again is served from the
+ * second-level cache. Statements are counted with Hibernate's statistics, against an in-memory database holding 50
+ * concerts, each with 3 dates and 2 of 20 performers. Each test starts with an empty cache.
+ */
+public class ConcertFetchTest {
+
+    private static final int NUM_CONCERTS = 50;
+    private static final int NUM_PERFORMERS = 20;
+
+    private static EntityManagerFactory emf;
+    private static Statistics statistics;
+    private static long firstConcertId;
+    private EntityManager em;
+
+    @BeforeClass
+    public static void createDatabase() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:fetching;DB_CLOSE_DELAY=-1;mv_store=false");
+        properties.put("javax.persistence.sql-load-script-source", "");
+        properties.put("hibernate.generate_statistics", "true");
+        emf = Persistence.createEntityManagerFactory("se325.assignment01.concert", properties);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            List<Performer> performers = new ArrayList<>();
+            for (int i = 0; i < NUM_PERFORMERS; i++) {
+                Performer performer = new Performer();
+                performer.setName("Performer " + i);
+                performer.setGenre(Genre.values()[i % Genre.values().length]);
+                em.persist(performer);
+                performers.add(performer);
+            }
+            for (int i = 0; i < NUM_CONCERTS; i++) {
+                Concert concert = new Concert();
+                concert.setTitle("Concert " + i);
+                LocalDateTime date = LocalDateTime.of(2030, 1, 1, 20, 0).plusDays(i * 3);
+                concert.setDates(new HashSet<>(Arrays.asList(date, date.plusDays(1), date.plusDays(2))));
+                concert.setPerformers(new HashSet<>(Arrays.asList(performers.get(i % NUM_PERFORMERS),
+                        performers.get((i + 1) % NUM_PERFORMERS))));
+                em.persist(concert);
+                if (i == 0) {
+                    firstConcertId = concert.getId();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterClass
+    public static void closeDatabase() {
+        emf.close();
+    }
+
+    @Before
+    public void setUp() {
+        emf.getCache().unwrap(Cache.class).evictAllRegions();
+        em = emf.createEntityManager();
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() {
+        em.close();
+    }
+
+    @Test
+    public void testCatalogueLoadsInTwoStatements() {
+        ConcertCatalogue.Snapshot snapshot = ConcertCatalogue.load(em, 1);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(NUM_CONCERTS, snapshot.getConcerts().size());
+        assertEquals(NUM_PERFORMERS, snapshot.getPerformers().size());
+        for (ConcertDTO concert : snapshot.getConcerts()) {
+            assertEquals(3, concert.getDates().size());
+            assertEquals(2, concert.getPerformers().size());
+        }
+    }
+
+    @Test
+    public void testConcertLoadsInOneStatement() {
+        Concert concert = em.find(Concert.class, firstConcertId,
+                Collections.singletonMap(GraphSemantic.FETCH.getJpaHintName(), em.getEntityGraph(Concert.FULL)));
+
+        assertEquals(3, concert.getDates().size());
+        assertEquals(2, concert.getPerformers().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testCatalogueReloadsFromCache() {
+        ConcertCatalogue.load(em, 1);
+        em.close();
+        em = emf.createEntityManager();
+        statistics.clear();
+
+        ConcertCatalogue.Snapshot snapshot = ConcertCatalogue.load(em, 2);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getQueryCacheHitCount());
+        assertEquals(NUM_CONCERTS, snapshot.getConcerts().size());
+        assertEquals(3, snapshot.getConcerts().get(0).getDates().size());
+        assertEquals(2, snapshot.getConcerts().get(0).getPerformers().size());
+    }
+
+    @Test
+    public void testConcertLoadsFromCache() {
+        Map<String, Object> hints = Collections.singletonMap(GraphSemantic.FETCH.getJpaHintName(), em.getEntityGraph(Concert.FULL));
+        em.find(Concert.class, firstConcertId, hints);
+        em.close();
+        em = emf.createEntityManager();
+        statistics.clear();
+
+        Concert concert = em.find(Concert.class, firstConcertId, hints);
+
+        assertEquals(3, concert.getDates().size());
+        assertEquals(2, concert.getPerformers().size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+}
@@ -0,0 +1,71 @@
+package se325.assignment01.concert.service;
+
+import org.junit.Test;
+import se325.assignment01.concert.service.util.ExpiringCache;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link ExpiringCache} expires entries, keeps to roughly its size, and evicts entries that haven't
+ * been used in preference to ones that have.
+ */
+public class ExpiringCacheTest {
+
+    @Test
+    public void testExpiredEntriesAreNotReturned() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 50);
+        cache.put("key", "value");
+        assertEquals("value", cache.get("key"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("key"));
+        // An expired entry doesn't stop another being cached in its place
+        assertNull(cache.putIfAbsent("key", "other"));
+        assertEquals("other", cache.get("key"));
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsCurrentValue() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        assertNull(cache.putIfAbsent("key", "first"));
+        assertEquals("first", cache.putIfAbsent("key", "second"));
+        assertEquals("first", cache.get("key"));
+    }
+
+    @Test
+    public void testRemoveOnlyRemovesGivenValue() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        cache.put("key", "value");
+        cache.remove("key", "other");
+        assertEquals("value", cache.get("key"));
+        cache.remove("key", "value");
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() throws InterruptedException {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(10, 60000);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i);
+        }
+        // Uses are only recorded to within a second
+        Thread.sleep(1100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+
+        for (int i = 10; i < 15; i++) {
+            cache.put(i, i);
+        }
+        int cached = 0;
+        for (int i = 0; i < 15; i++) {
+            if (cache.get(i) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached <= 10);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package se325.assignment01.concert.service;
+
+import org.junit.Test;
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link HashedWheelTimer} fires each timeout no earlier than its deadline, including timeouts
+ * that are more than a full turn of the wheel away, and never fires a cancelled timeout.
+ */
+public class HashedWheelTimerTest {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    public void testFiresNoEarlierThanDeadline() throws InterruptedException {
+        Map<String, Long> fired = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        HashedWheelTimer<String> timer = new HashedWheelTimer<>("test-timer", TICK_MILLIS, WHEEL_SIZE, item -> {
+            fired.put(item, System.currentTimeMillis());
+            latch.countDown();
+        });
+
+        long start = System.currentTimeMillis();
+        timer.schedule("now", 0);
+        timer.schedule("soon", 35);
+        // Several turns of the wheel away
+        timer.schedule("later", 300);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(fired.get("now") >= start);
+        assertTrue(fired.get("soon") >= start + 35);
+        assertTrue(fired.get("later") >= start + 300);
+        assertEquals(3, fired.size());
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesNotFire() throws InterruptedException {
+        Map<String, Long> fired = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedWheelTimer<String> timer = new HashedWheelTimer<>("test-timer", TICK_MILLIS, WHEEL_SIZE, item -> {
+            fired.put(item, System.currentTimeMillis());
+            latch.countDown();
+        });
+
+        HashedWheelTimer.Timeout<String> cancelled = timer.schedule("cancelled", 50);
+        // Cancelled once it is already on the wheel
+        HashedWheelTimer.Timeout<String> cancelledLater = timer.schedule("cancelledLater", 150);
+        timer.schedule("kept", 200);
+        cancelled.cancel();
+        Thread.sleep(50);
+        cancelledLater.cancel();
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(Map.of("kept", fired.get("kept")), fired);
+    }
+}
@@ -0,0 +1,54 @@
+package se325.assignment01.concert.service;
+
+import org.junit.Test;
+import se325.assignment01.concert.service.util.PasswordHasher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link PasswordHasher} matches passwords against their hashes and legacy plaintext, and treats a stored
+ * hash it can't read as matching nothing and needing to be replaced, rather than failing.
+ */
+public class PasswordHasherTest {
+
+    @Test
+    public void testMatchesHashedPassword() {
+        String stored = PasswordHasher.hash("secret");
+        assertTrue(PasswordHasher.matches("secret", stored));
+        assertFalse(PasswordHasher.matches("Secret", stored));
+        assertFalse(PasswordHasher.needsRehash(stored));
+    }
+
+    @Test
+    public void testMatchesPlaintextPassword() {
+        assertTrue(PasswordHasher.matches("secret", "secret"));
+        assertFalse(PasswordHasher.matches("other", "secret"));
+        assertTrue(PasswordHasher.needsRehash("secret"));
+    }
+
+    @Test
+    public void testMalformedHashMatchesNothing() {
+        String stored = PasswordHasher.hash("secret");
+        String[] fields = stored.split("\\$");
+        String[] malformed = {
+                "pbkdf2$",
+                "pbkdf2$" + fields[1],
+                "pbkdf2$" + fields[1] + "$" + fields[2],
+                "pbkdf2$many$" + fields[2] + "$" + fields[3],
+                "pbkdf2$0$" + fields[2] + "$" + fields[3],
+                "pbkdf2$" + fields[1] + "$not base64!$" + fields[3],
+                "pbkdf2$" + fields[1] + "$" + fields[2] + "$not base64!",
+                "pbkdf2$" + fields[1] + "$$" + fields[3],
+        };
+        for (String hash : malformed) {
+            assertFalse(hash, PasswordHasher.matches("secret", hash));
+        }
+    }
+
+    @Test
+    public void testMalformedHashNeedsRehash() {
+        assertTrue(PasswordHasher.needsRehash("pbkdf2$"));
+        assertTrue(PasswordHasher.needsRehash("pbkdf2$many$salt$hash"));
+        assertTrue(PasswordHasher.needsRehash("pbkdf2$99999999999999999999$salt$hash"));
+    }
+}
@@ -0,0 +1,65 @@
+package se325.assignment01.concert.service;
+
+import org.junit.Test;
+import se325.assignment01.concert.service.util.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link RateLimiter} allows a burst of requests under each key, then refills at its rate, and tells
+ * a rejected request roughly how long to wait.
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void testAllowsBurstThenRejects() {
+        RateLimiter limiter = new RateLimiter(10, 3, 100);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client"));
+        }
+
+        long wait = limiter.tryAcquire("client");
+        assertTrue(wait > 0);
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testKeysHaveSeparateBuckets() {
+        RateLimiter limiter = new RateLimiter(1, 1, 100);
+        assertEquals(0, limiter.tryAcquire("first"));
+        assertTrue(limiter.tryAcquire("first") > 0);
+        assertEquals(0, limiter.tryAcquire("second"));
+    }
+
+    @Test
+    public void testRejectedRequestsAreNotCounted() {
+        RateLimiter limiter = new RateLimiter(10, 1, 100);
+        assertEquals(0, limiter.tryAcquire("client"));
+        long firstWait = limiter.tryAcquire("client");
+        // A client that keeps retrying doesn't push its next allowed request further away
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire("client") <= firstWait);
+        }
+    }
+
+    @Test
+    public void testRefillsAfterWaiting() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(20, 1, 100);
+        assertEquals(0, limiter.tryAcquire("client"));
+        long wait = limiter.tryAcquire("client");
+        assertTrue(wait > 0);
+
+        TimeUnit.NANOSECONDS.sleep(wait);
+        assertEquals(0, limiter.tryAcquire("client"));
+    }
+
+    @Test
+    public void testStaysUsableBeyondMaxKeys() {
+        RateLimiter limiter = new RateLimiter(1, 1, 10);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire("client" + i));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package se325.assignment01.concert.service;
+
+import org.junit.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the queries made on the hot paths of the service use the indexes declared on the entities, rather than
+ * scanning their tables, once the tables are large. The schema is generated from the entities into an in-memory
+ * database, which is filled with 1.2 million seats (120 seats for each of 10,000 dates), 100,000 users and 100,000
+ * bookings.
+ */
+public class SchemaIndexTest {
+
+    private static final int NUM_DATES = 10000;
+    private static final int NUM_USERS = 100000;
+
+    private static EntityManagerFactory emf;
+    private EntityManager em;
+
+    @BeforeClass
+    public static void createDatabase() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:indexes;DB_CLOSE_DELAY=-1;mv_store=false");
+        properties.put("javax.persistence.sql-load-script-source", "");
+        emf = Persistence.createEntityManagerFactory("se325.assignment01.concert", properties);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("insert into SEAT (ID, VERSION, LABEL, IS_BOOKED, DATE, PRICE) " +
+                    "select X, 0, char(65 + mod(X, 120) / 12) || (mod(X, 12) + 1), mod(X, 3) = 0, " +
+                    "dateadd('DAY', X / 120, timestamp '2020-01-01 20:00:00'), 50 " +
+                    "from system_range(0, " + (NUM_DATES * 120 - 1) + ")")
+                    .executeUpdate();
+            em.createNativeQuery("insert into USERS (ID, VERSION, USERNAME, PASSWORD, AUTH_TOKEN) " +
+                    "select X, 0, 'user' || X, 'pa55word', random_uuid() from system_range(1, " + NUM_USERS + ")")
+                    .executeUpdate();
+            em.createNativeQuery("insert into BOOKING (ID, USER_ID, DATE) " +
+                    "select X, X, timestamp '2020-01-01 20:00:00' from system_range(1, " + NUM_USERS + ")")
+                    .executeUpdate();
+            em.getTransaction().commit();
+
+            // Give the query planner the statistics it would have for a long-running database
+            em.getTransaction().begin();
+            em.createNativeQuery("analyze").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterClass
+    public static void closeDatabase() {
+        emf.close();
+    }
+
+    @Before
+    public void setUp() {
+        em = emf.createEntityManager();
+    }
+
+    @After
+    public void tearDown() {
+        em.close();
+    }
+
+    @Test
+    public void testSeatsByDateUseIndex() {
+        assertUsesIndex("IDX_SEAT_DATE_",
+                "select * from SEAT where DATE = timestamp '2030-06-01 20:00:00'");
+    }
+
+    @Test
+    public void testSeatsByDateAndLabelUseIndex() {
+        assertUsesIndex("IDX_SEAT_DATE_LABEL",
+                "select ID from SEAT where DATE = timestamp '2030-06-01 20:00:00' and LABEL in ('A1', 'A2', 'A3')");
+    }
+
+    @Test
+    public void testSeatsByDateAndStatusUseIndex() {
+        assertUsesIndex("IDX_SEAT_DATE_BOOKED",
+                "select * from SEAT where DATE = timestamp '2030-06-01 20:00:00' and IS_BOOKED = false");
+    }
+
+    @Test
+    public void testUserByAuthTokenUsesIndex() {
+        assertUsesIndex("IDX_USERS_AUTH_TOKEN",
+                "select ID, USERNAME from USERS where AUTH_TOKEN = 'a4d3e54c-6a07-4b1d-9d5e-7b1c0a8d1f2e'");
+    }
+
+    @Test
+    public void testUserByUsernameAndPasswordUsesIndex() {
+        assertUsesIndex("IDX_USERS_USERNAME",
+                "select * from USERS where USERNAME = 'user500' and PASSWORD = 'pa55word'");
+    }
+
+    @Test
+    public void testBookingsByUserUseIndex() {
+        assertUsesIndex("IDX_BOOKING_USER",
+                "select * from BOOKING where USER_ID = 500 and ID > 100 order by ID");
+    }
+
+    private void assertUsesIndex(String indexName, String sql) {
+        String plan = (String) em.createNativeQuery("explain " + sql).getSingleResult();
+        assertFalse("Table scan in plan: " + plan, plan.contains("tableScan"));
+        assertTrue("Expected " + indexName + " in plan: " + plan, plan.contains("PUBLIC." + indexName));
+    }
+}
@@ -0,0 +1,81 @@
+package se325.assignment01.concert.service;
+
+import org.junit.Test;
+import se325.assignment01.concert.service.util.SeatAvailability;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link SeatAvailability#findAdjacentSeats(BitSet, int, int, int)} picks seats for best-available
+ * bookings: from the front row searched, as close to the centre of the row as possible, never across a row, and
+ * never including a taken seat.
+ */
+public class SeatAvailabilityTest {
+
+    private static final int ALL_ROWS = TheatreLayout.NUM_ROWS;
+
+    @Test
+    public void testPicksCentreOfFrontRow() {
+        assertEquals(List.of("A6", "A7"), SeatAvailability.findAdjacentSeats(new BitSet(), 2, 0, ALL_ROWS));
+        assertEquals(List.of("A5", "A6", "A7"), SeatAvailability.findAdjacentSeats(new BitSet(), 3, 0, ALL_ROWS));
+    }
+
+    @Test
+    public void testPicksWholeRow() {
+        List<String> seats = SeatAvailability.findAdjacentSeats(new BitSet(), TheatreLayout.NUM_SEATS_PER_ROW, 0, ALL_ROWS);
+        assertEquals(TheatreLayout.NUM_SEATS_PER_ROW, seats.size());
+        assertEquals("A1", seats.get(0));
+        assertEquals("A12", seats.get(seats.size() - 1));
+    }
+
+    @Test
+    public void testMovesAwayFromTakenCentre() {
+        BitSet taken = taken("A6", "A7");
+        // Both sides of the centre are as close; the first is chosen
+        assertEquals(List.of("A4", "A5"), SeatAvailability.findAdjacentSeats(taken, 2, 0, ALL_ROWS));
+
+        taken.or(taken("A5"));
+        assertEquals(List.of("A8", "A9"), SeatAvailability.findAdjacentSeats(taken, 2, 0, ALL_ROWS));
+    }
+
+    @Test
+    public void testSkipsRowsWithoutEnoughAdjacentSeats() {
+        // Row A has 12 free seats, but no 3 of them together
+        BitSet taken = new BitSet();
+        for (int i = 2; i < TheatreLayout.NUM_SEATS_PER_ROW; i += 3) {
+            taken.set(i);
+        }
+        assertEquals(List.of("B5", "B6", "B7"), SeatAvailability.findAdjacentSeats(taken, 3, 0, ALL_ROWS));
+    }
+
+    @Test
+    public void testDoesNotPickAcrossRows() {
+        // The only free seats are the last two of row A and the first two of row B
+        BitSet taken = new BitSet();
+        taken.set(0, TheatreLayout.NUM_SEATS_IN_THEATRE);
+        taken.andNot(taken("A11", "A12", "B1", "B2"));
+        assertNull(SeatAvailability.findAdjacentSeats(taken, 3, 0, ALL_ROWS));
+        assertEquals(List.of("A11", "A12"), SeatAvailability.findAdjacentSeats(taken, 2, 0, ALL_ROWS));
+    }
+
+    @Test
+    public void testOnlySearchesGivenRows() {
+        assertEquals(List.of("D6", "D7"), SeatAvailability.findAdjacentSeats(new BitSet(), 2, 3, 5));
+
+        BitSet taken = new BitSet();
+        taken.set(3 * TheatreLayout.NUM_SEATS_PER_ROW, 5 * TheatreLayout.NUM_SEATS_PER_ROW);
+        assertNull(SeatAvailability.findAdjacentSeats(taken, 2, 3, 5));
+    }
+
+    private static BitSet taken(String... labels) {
+        BitSet taken = new BitSet();
+        for (String label : labels) {
+            taken.set(TheatreLayout.indexOf(label));
+        }
+        return taken;
+    }
+}